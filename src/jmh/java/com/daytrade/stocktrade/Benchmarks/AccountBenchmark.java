@@ -0,0 +1,68 @@
+package com.daytrade.stocktrade.Benchmarks;
+
+import com.daytrade.stocktrade.Models.Account;
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Transactions.Transaction;
+import com.daytrade.stocktrade.Services.TransactionService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Money and portfolio arithmetic of a filled order and the two decimal rounding in the setters
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccountBenchmark {
+
+  private Account account;
+  private Transaction buy;
+  private Transaction sell;
+  private double amount = 1234.5678;
+
+  @Setup
+  public void setup() {
+    account = new Account("user42");
+    account.setBalance(1_000_000D);
+    account.getPortfolio().put("ABC", 100L);
+    buy = order(Enums.TransactionType.BUY);
+    sell = order(Enums.TransactionType.SELL);
+  }
+
+  // A buy and a sell of the same amount, so the account stays the same across invocations
+  @Benchmark
+  public Account buyThenSell() {
+    TransactionService.applyToAccount(account, buy);
+    TransactionService.applyToAccount(account, sell);
+    return account;
+  }
+
+  @Benchmark
+  public Double accountSetBalance() {
+    amount += 0.01;
+    account.setBalance(amount);
+    return account.getBalance();
+  }
+
+  @Benchmark
+  public Double transactionSetCashAmount() {
+    amount += 0.01;
+    buy.setCashAmount(amount);
+    return buy.getCashAmount();
+  }
+
+  private static Transaction order(Enums.TransactionType type) {
+    Transaction transaction = new Transaction();
+    transaction.setType(type);
+    transaction.setUserName("user42");
+    transaction.setStockCode("ABC");
+    transaction.setStockAmount(7L);
+    transaction.setUnitPrice(137.52);
+    transaction.setCashAmount(7 * 137.52);
+    return transaction;
+  }
+}
@@ -0,0 +1,76 @@
+package com.daytrade.stocktrade.Benchmarks;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Logger;
+import com.daytrade.stocktrade.Services.LogXmlWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Rendering dumplog fragments, alone and as a whole dump of stored fragments
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogXmlBenchmark {
+
+  private static final int DUMP_SIZE = 1000;
+
+  private Logger commandLog;
+  private Logger quoteLog;
+  private final List<Logger> stored = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    commandLog = new Logger(Enums.LogType.UserCommandType, "1234", "server1");
+    commandLog.setCommandType(Enums.CommandType.BUY);
+    commandLog.setUserName("user42");
+    commandLog.setStockSymbol("ABC");
+    commandLog.setFunds(1000.25);
+
+    quoteLog = new Logger(Enums.LogType.QuoteServerType, "1234", "QSRV");
+    quoteLog.setUserName("user42");
+    quoteLog.setStockSymbol("ABC");
+    quoteLog.setUnitPrice(137.52);
+    quoteLog.setQuoteServerTime(Instant.now());
+    quoteLog.setCryptoKey("IRrR7UeTO35kSWUgG0QJKmB35sL27FKM7AVhP5qpjCgmWQeXFJs35g==");
+
+    for (int i = 0; i < DUMP_SIZE; i++) {
+      Logger log = i % 2 == 0 ? commandLog : quoteLog;
+      Logger copy = new Logger(log.getLogType(), String.valueOf(i), log.getServerName());
+      copy.setXml(LogXmlWriter.render(log));
+      stored.add(copy);
+    }
+  }
+
+  @Benchmark
+  public String renderCommand() {
+    return LogXmlWriter.render(commandLog);
+  }
+
+  @Benchmark
+  public String renderQuote() {
+    return LogXmlWriter.render(quoteLog);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void writeDump() throws IOException {
+    try (LogXmlWriter writer = new LogXmlWriter(OutputStream.nullOutputStream())) {
+      writer.writeStart();
+      for (Logger log : stored) {
+        writer.write(log);
+      }
+      writer.writeEnd();
+    }
+  }
+}
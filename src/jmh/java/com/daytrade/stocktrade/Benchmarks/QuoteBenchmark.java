@@ -0,0 +1,26 @@
+package com.daytrade.stocktrade.Benchmarks;
+
+import com.daytrade.stocktrade.Models.Quote;
+import com.daytrade.stocktrade.Services.QuoteService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Parsing a quote server response line into a Quote
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QuoteBenchmark {
+
+  private final String response =
+      "137.52,ABC,user42,1615234567890,IRrR7UeTO35kSWUgG0QJKmB35sL27FKM7AVhP5qpjCgmWQeXFJs35g==";
+
+  @Benchmark
+  public Quote parse() {
+    return QuoteService.parse(response, "user42", "1234", "ABC");
+  }
+}
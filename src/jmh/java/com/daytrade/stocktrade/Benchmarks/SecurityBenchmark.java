@@ -0,0 +1,51 @@
+package com.daytrade.stocktrade.Benchmarks;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.daytrade.stocktrade.Config.Security.SecurityConsts;
+import com.daytrade.stocktrade.Services.SecurityService;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// JWT verification with the token cache and with every token run through HMAC-SHA512
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SecurityBenchmark {
+
+  private static final String SECRET = "benchmark-secret";
+  private static final long EXPIRY_MS = 86400000;
+
+  private SecurityService cached;
+  private SecurityService uncached;
+  private String header;
+
+  @Setup
+  public void setup() {
+    cached = new SecurityService(SECRET, EXPIRY_MS, 100000);
+    uncached = new SecurityService(SECRET, EXPIRY_MS, 0);
+    String token =
+        JWT.create()
+            .withSubject("user42")
+            .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRY_MS))
+            .sign(Algorithm.HMAC512(SECRET.getBytes()));
+    header = SecurityConsts.AUTH_HEADER_PREFIX + token;
+  }
+
+  @Benchmark
+  public String verifyCached() {
+    return cached.getUserFromJwt(header);
+  }
+
+  @Benchmark
+  public String verifyUncached() {
+    return uncached.getUserFromJwt(header);
+  }
+}
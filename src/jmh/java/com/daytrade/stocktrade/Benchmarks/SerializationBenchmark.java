@@ -0,0 +1,84 @@
+package com.daytrade.stocktrade.Benchmarks;
+
+import com.daytrade.stocktrade.Models.Account;
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.LogPage;
+import com.daytrade.stocktrade.Models.Logger;
+import com.daytrade.stocktrade.Models.Summary;
+import com.daytrade.stocktrade.Models.Transactions.Transaction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Response bodies of /accounts/displaySummary and /logs, with the mapper setup spring boot uses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+  private ObjectMapper objectMapper;
+  private Summary summary;
+  private LogPage page;
+
+  @Setup
+  public void setup() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    Account account = new Account("user42");
+    account.setBalance(10000D);
+    List<Transaction> closed = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Transaction transaction = new Transaction();
+      transaction.setId(new ObjectId().toHexString());
+      transaction.setType(i % 2 == 0 ? Enums.TransactionType.BUY : Enums.TransactionType.SELL);
+      transaction.setStatus(Enums.TransactionStatus.FILLED);
+      transaction.setUserName("user42");
+      transaction.setStockCode("S" + (i % 20));
+      account.getPortfolio().put(transaction.getStockCode(), (long) i);
+      transaction.setStockAmount(7L);
+      transaction.setUnitPrice(137.52);
+      transaction.setCashAmount(7 * 137.52);
+      transaction.setTransactionId(String.valueOf(i));
+      transaction.setCreatedDate(Instant.now());
+      closed.add(transaction);
+    }
+    summary = new Summary("user42", account);
+    summary.setClosedTransactions(closed);
+    summary.setOpenTriggers(new ArrayList<>());
+    summary.setPendingTransactions(new ArrayList<>());
+
+    List<Logger> logs = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      Logger log = new Logger(Enums.LogType.UserCommandType, String.valueOf(i), "server1");
+      log.setId(new ObjectId().toHexString());
+      log.setCommandType(Enums.CommandType.BUY);
+      log.setUserName("user42");
+      log.setStockSymbol("ABC");
+      log.setFunds(1000.25);
+      logs.add(log);
+    }
+    page = new LogPage(logs, "MTYxNTIzNDU2Nzg5MDo2MDRhNmI1ZjAwMDAwMDAwMDAwMDAwMDA");
+  }
+
+  @Benchmark
+  public byte[] summary() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(summary);
+  }
+
+  @Benchmark
+  public byte[] logPage() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(page);
+  }
+}
@@ -0,0 +1,81 @@
+package com.daytrade.stocktrade.Config;
+
+import com.daytrade.stocktrade.Services.Bulkhead;
+import com.daytrade.stocktrade.Services.Bulkheads;
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Puts each request in the bulkhead of the work it does and sheds it with a 503 when that one is
+ * full. Log dumps take their slot in LoggerService since they are streamed after the request
+ * thread returns, logins take theirs in LoginService since the security filters answer them before
+ * this filter runs, and the reactive endpoints do not hold a thread.
+ */
+@Component
+public class BulkheadFilter extends OncePerRequestFilter {
+
+  private static final String[] QUOTE_PATHS = {"/quote/", "/order/simple"};
+  private static final String LOGIN_PATH = "/users/";
+  private static final String[] UNLIMITED_PATHS = {
+    "/logs/dumplog",
+    "/logs/user/dumplog",
+    "/reactive/",
+    "/actuator",
+    "/swagger",
+    "/v3/api-docs"
+  };
+
+  private final Bulkheads bulkheads;
+
+  @Autowired
+  public BulkheadFilter(Bulkheads bulkheads) {
+    this.bulkheads = bulkheads;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    Bulkhead bulkhead = bulkhead(request.getServletPath());
+    if (bulkhead == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    if (!bulkhead.tryAcquire()) {
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(
+          HttpHeaders.RETRY_AFTER, String.valueOf(bulkhead.getRetryAfterSeconds()));
+      return;
+    }
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  private Bulkhead bulkhead(String path) {
+    for (String unlimited : UNLIMITED_PATHS) {
+      if (path.startsWith(unlimited)) {
+        return null;
+      }
+    }
+    if (path.startsWith(LOGIN_PATH)) {
+      return bulkheads.login();
+    }
+    for (String quote : QUOTE_PATHS) {
+      if (path.startsWith(quote)) {
+        return bulkheads.quote();
+      }
+    }
+    return bulkheads.mongo();
+  }
+}
@@ -0,0 +1,218 @@
+package com.daytrade.stocktrade.Config;
+
+import com.daytrade.stocktrade.Models.Enums;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import lombok.Data;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+// Runs explain on the shape of every repository query and flags collection scans and in memory
+// sorts. Exposed at /actuator/indexreport
+@Component
+@Endpoint(id = "indexreport")
+public class IndexReportEndpoint {
+
+  private final MongoTemplate mongoTemplate;
+
+  public IndexReportEndpoint(MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @ReadOperation
+  public List<IndexUsage> report() {
+    List<IndexUsage> report = new ArrayList<>();
+    for (QueryShape shape : queryShapes()) {
+      report.add(explain(shape));
+    }
+    return report;
+  }
+
+  private IndexUsage explain(QueryShape shape) {
+    Document find = new Document("find", shape.collection).append("filter", shape.filter);
+    if (shape.sort != null) {
+      find.append("sort", shape.sort);
+    }
+    Document explain =
+        mongoTemplate
+            .getDb()
+            .runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+
+    IndexUsage usage = new IndexUsage();
+    usage.setQuery(shape.name);
+    usage.setCollection(shape.collection);
+    Document queryPlanner = explain.get("queryPlanner", Document.class);
+    if (queryPlanner != null) {
+      inspectPlan(queryPlanner.get("winningPlan", Document.class), usage);
+    }
+    return usage;
+  }
+
+  // Walk the winning plan tree recording the stages that matter for index coverage
+  @SuppressWarnings("unchecked")
+  private static void inspectPlan(Document stage, IndexUsage usage) {
+    if (stage == null) {
+      return;
+    }
+    String name = stage.getString("stage");
+    if ("COLLSCAN".equals(name)) {
+      usage.setCollectionScan(true);
+    } else if ("SORT".equals(name)) {
+      usage.setInMemorySort(true);
+    } else if ("IXSCAN".equals(name)) {
+      usage.getIndexes().add(stage.getString("indexName"));
+    }
+    inspectPlan(stage.get("inputStage", Document.class), usage);
+    List<Document> inputStages = (List<Document>) stage.get("inputStages");
+    if (inputStages != null) {
+      inputStages.forEach(s -> inspectPlan(s, usage));
+    }
+  }
+
+  // Mirrors the repository queries and the claims in TransactionService, values only need to have
+  // the right type
+  private static List<QueryShape> queryShapes() {
+    String user = "";
+    String stock = "";
+    String committed = Enums.TransactionStatus.COMMITTED.name();
+    String pending = Enums.TransactionStatus.PENDING.name();
+    String sellAt = Enums.TransactionType.SELL_AT.name();
+    Document byCreated = new Document("createdDate", 1);
+
+    List<QueryShape> shapes = new ArrayList<>();
+    shapes.add(
+        new QueryShape(
+            "TransactionService.claimCommitted(stockCode)",
+            "transactions",
+            new Document("userName", user)
+                .append("type", sellAt)
+                .append("stockCode", stock)
+                .append("status", committed),
+            byCreated));
+    shapes.add(
+        new QueryShape(
+            "TransactionService.claimFill",
+            "transactions",
+            new Document("_id", new ObjectId()).append("status", committed),
+            null));
+    shapes.add(
+        new QueryShape(
+            "TransactionRepository.findAllByStatusAndType",
+            "transactions",
+            new Document("status", committed).append("type", sellAt),
+            null));
+    shapes.add(
+        new QueryShape(
+            "TransactionRepository.findByUserNameAndStatusInOrderByCreatedDate",
+            "transactions",
+            new Document("userName", user)
+                .append("status", new Document("$in", List.of(committed))),
+            byCreated));
+    shapes.add(
+        new QueryShape(
+            "TransactionRepository.streamByUserNameAndStatusNotInOrderByCreatedDate",
+            "transactions",
+            new Document("userName", user)
+                .append("status", new Document("$nin", List.of(committed))),
+            byCreated));
+    shapes.add(
+        new QueryShape(
+            "TransactionService.claimPending",
+            "pending_transactions",
+            new Document("userName", user).append("type", sellAt).append("status", pending),
+            byCreated));
+    shapes.add(
+        new QueryShape(
+            "TransactionService.claimPending(stockCode)",
+            "pending_transactions",
+            new Document("userName", user)
+                .append("type", sellAt)
+                .append("status", pending)
+                .append("stockCode", stock),
+            byCreated));
+    shapes.add(
+        new QueryShape(
+            "TransactionService.releaseStaleClaims",
+            "pending_transactions",
+            new Document("status", new Document("$ne", pending))
+                .append("claimedAt", new Document("$lt", Date.from(Instant.now()))),
+            null));
+    shapes.add(
+        new QueryShape(
+            "PendingTransactionRepository.findAllByCreatedDateBefore",
+            "pending_transactions",
+            new Document("createdDate", new Document("$lt", Date.from(Instant.now()))),
+            null));
+    shapes.add(
+        new QueryShape(
+            "PendingTransactionRepository.findByUserNameOrderByCreatedDate",
+            "pending_transactions",
+            new Document("userName", user),
+            byCreated));
+    shapes.add(
+        new QueryShape(
+            "LoggerRepository.streamByUserName", "logs", new Document("userName", user), null));
+    Document byTimestampAndId = new Document("timestamp", 1).append("_id", 1);
+    shapes.add(new QueryShape("LoggerService.getLogs", "logs", new Document(), byTimestampAndId));
+    shapes.add(
+        new QueryShape(
+            "LoggerService.getLogs(user)",
+            "logs",
+            new Document("userName", user),
+            byTimestampAndId));
+    shapes.add(
+        new QueryShape(
+            "LoggerService.getLogs(command)",
+            "logs",
+            new Document("commandType", Enums.CommandType.BUY.name()),
+            byTimestampAndId));
+    shapes.add(
+        new QueryShape(
+            "LoggerService.getLogs(transactionNumber)",
+            "logs",
+            new Document("transactionNumber", "1"),
+            byTimestampAndId));
+    shapes.add(
+        new QueryShape(
+            "DumpLogExporter.partition",
+            "logs",
+            new Document("serverName", "server"),
+            new Document("timestamp", 1)));
+    shapes.add(
+        new QueryShape(
+            "AccountRepository.findByName", "accounts", new Document("name", user), null));
+    shapes.add(
+        new QueryShape(
+            "UserRepository.findByUsername", "users", new Document("username", user), null));
+    return shapes;
+  }
+
+  private static class QueryShape {
+    private final String name;
+    private final String collection;
+    private final Document filter;
+    private final Document sort;
+
+    QueryShape(String name, String collection, Document filter, Document sort) {
+      this.name = name;
+      this.collection = collection;
+      this.filter = filter;
+      this.sort = sort;
+    }
+  }
+
+  @Data
+  public static class IndexUsage {
+    private String query;
+    private String collection;
+    private List<String> indexes = new ArrayList<>();
+    private boolean collectionScan;
+    private boolean inMemorySort;
+  }
+}
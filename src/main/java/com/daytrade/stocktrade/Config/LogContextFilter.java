@@ -0,0 +1,35 @@
+package com.daytrade.stocktrade.Config;
+
+import com.daytrade.stocktrade.Services.AuditLogWriter;
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Collects the audit logs of a request and writes them in one batch when it is done
+@Component
+public class LogContextFilter extends OncePerRequestFilter {
+
+  private final AuditLogWriter auditLogWriter;
+
+  @Autowired
+  public LogContextFilter(AuditLogWriter auditLogWriter) {
+    this.auditLogWriter = auditLogWriter;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    auditLogWriter.beginRequest();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      auditLogWriter.endRequest();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.daytrade.stocktrade.Config;
+
+import com.daytrade.stocktrade.Services.RequestMetrics;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Counts every mongo round trip, the documents it returned and its time per collection. The sync
+ * driver calls the listener on the thread that ran the command, so round trips made by a request
+ * are also added to that request's metrics.
+ */
+@Configuration
+public class MongoCommandMetrics implements CommandListener {
+
+  private static final String NONE = "none";
+
+  private final MeterRegistry meterRegistry;
+  private final RequestMetrics requestMetrics;
+  // Collection of each command in flight by request id, the finished events only carry the id
+  private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+  @Autowired
+  public MongoCommandMetrics(MeterRegistry meterRegistry, RequestMetrics requestMetrics) {
+    this.meterRegistry = meterRegistry;
+    this.requestMetrics = requestMetrics;
+  }
+
+  @Bean
+  MongoClientSettingsBuilderCustomizer mongoCommandListener() {
+    return builder -> builder.addCommandListener(this);
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent event) {
+    collections.put(event.getRequestId(), collection(event));
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    finished(
+        event.getRequestId(),
+        event.getCommandName(),
+        "success",
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        documents(event.getResponse()));
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    finished(
+        event.getRequestId(),
+        event.getCommandName(),
+        "failed",
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        0);
+  }
+
+  private void finished(int requestId, String command, String status, long nanos, int documents) {
+    String collection = collections.remove(requestId);
+    if (collection == null) {
+      collection = NONE;
+    }
+    Timer.builder("mongo.commands")
+        .tags("collection", collection, "command", command, "status", status)
+        .register(meterRegistry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+    DistributionSummary.builder("mongo.documents")
+        .tags("collection", collection, "command", command)
+        .register(meterRegistry)
+        .record(documents);
+    requestMetrics.mongo(collection, nanos, documents);
+  }
+
+  // {find: "accounts", ...}, getMore names its collection in a field of its own
+  private static String collection(CommandStartedEvent event) {
+    BsonDocument command = event.getCommand();
+    BsonValue collection = command.get("collection");
+    if (collection == null || !collection.isString()) {
+      collection = command.get(event.getCommandName());
+    }
+    return collection != null && collection.isString() ? collection.asString().getValue() : NONE;
+  }
+
+  // Documents in the returned batch of a query, otherwise the documents written
+  private static int documents(BsonDocument response) {
+    BsonValue cursor = response.get("cursor");
+    if (cursor != null && cursor.isDocument()) {
+      for (String batch : new String[] {"firstBatch", "nextBatch"}) {
+        BsonValue documents = cursor.asDocument().get(batch);
+        if (documents != null && documents.isArray()) {
+          return documents.asArray().size();
+        }
+      }
+    }
+    BsonValue n = response.get("n");
+    return n != null && n.isNumber() ? n.asNumber().intValue() : 0;
+  }
+}
@@ -0,0 +1,63 @@
+package com.daytrade.stocktrade.Config;
+
+import com.daytrade.stocktrade.Services.RateLimitService;
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Charges quote, order and dump requests to the user's budget, 429 once it is used up. Runs
+// before the bulkheads so throttled requests never take a slot.
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+  private final RateLimitService rateLimitService;
+
+  @Autowired
+  public RateLimitFilter(RateLimitService rateLimitService) {
+    this.rateLimitService = rateLimitService;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    RateLimitService.Budget budget = budget(request.getServletPath());
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (budget != null && authentication != null) {
+      String name = authentication.getName();
+      if (!rateLimitService.tryAcquire(name, budget)) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(
+            HttpHeaders.RETRY_AFTER,
+            String.valueOf(rateLimitService.retryAfterSeconds(name, budget)));
+        return;
+      }
+    }
+    chain.doFilter(request, response);
+  }
+
+  private static RateLimitService.Budget budget(String path) {
+    if (path.startsWith("/quote/") || path.startsWith("/reactive/quote/")) {
+      return RateLimitService.Budget.QUOTE;
+    }
+    if (path.startsWith("/order/")) {
+      return RateLimitService.Budget.ORDER;
+    }
+    if (path.equals("/logs/dumplog") || path.equals("/logs/user/dumplog")) {
+      return RateLimitService.Budget.DUMP;
+    }
+    return null;
+  }
+}
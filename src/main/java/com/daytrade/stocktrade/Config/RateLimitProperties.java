@@ -0,0 +1,36 @@
+package com.daytrade.stocktrade.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// Rate limit tiers, each with a budget of permits per interval for quotes, orders and dumps
+@Component
+@ConfigurationProperties("rate-limit")
+@Data
+public class RateLimitProperties {
+
+  private boolean enabled = true;
+
+  private String defaultTier = "standard";
+
+  // Limiters of users idle this long are dropped from redis and from the local cache
+  private long idleSeconds = 3600;
+
+  private Map<String, Tier> tiers = new HashMap<>();
+
+  @Data
+  public static class Tier {
+    private Budget quote = new Budget();
+    private Budget order = new Budget();
+    private Budget dump = new Budget();
+  }
+
+  @Data
+  public static class Budget {
+    private long permits = 10;
+    private long intervalSeconds = 1;
+  }
+}
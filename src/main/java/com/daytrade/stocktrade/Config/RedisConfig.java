@@ -4,10 +4,12 @@ import java.util.HashMap;
 import java.util.Map;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
 import org.redisson.config.Config;
 import org.redisson.spring.cache.CacheConfig;
 import org.redisson.spring.cache.RedissonSpringCacheManager;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -22,9 +24,14 @@ public class RedisConfig {
 
   @Bean(destroyMethod = "shutdown")
   RedissonClient redisson() {
-    Config config = new Config();
-    config.useSingleServer().setAddress("redis://" + redisHost + ":" + redisPort);
-    return Redisson.create(config);
+    return Redisson.create(config());
+  }
+
+  // Used by the reactive endpoints, same server and codec as the blocking client
+  @Bean(destroyMethod = "shutdown")
+  @ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+  RedissonReactiveClient redissonReactive() {
+    return Redisson.createReactive(config());
   }
 
   @Bean
@@ -34,4 +41,10 @@ public class RedisConfig {
     config.put("quotes", new CacheConfig(60 * 1000, 12 * 60 * 1000));
     return new RedissonSpringCacheManager(redissonClient, config);
   }
+
+  private Config config() {
+    Config config = new Config();
+    config.useSingleServer().setAddress("redis://" + redisHost + ":" + redisPort);
+    return config;
+  }
 }
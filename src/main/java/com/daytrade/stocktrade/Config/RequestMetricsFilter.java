@@ -0,0 +1,36 @@
+package com.daytrade.stocktrade.Config;
+
+import com.daytrade.stocktrade.Services.RequestMetrics;
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Times each request and collects its mongo usage for the per command metrics
+@Component
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+  private final RequestMetrics requestMetrics;
+
+  @Autowired
+  public RequestMetricsFilter(RequestMetrics requestMetrics) {
+    this.requestMetrics = requestMetrics;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    long start = System.nanoTime();
+    requestMetrics.beginRequest();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      requestMetrics.endRequest(System.nanoTime() - start);
+    }
+  }
+}
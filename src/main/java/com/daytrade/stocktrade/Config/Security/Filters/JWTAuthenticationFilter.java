@@ -3,6 +3,7 @@ package com.daytrade.stocktrade.Config.Security.Filters;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.daytrade.stocktrade.Config.Security.SecurityConsts;
+import com.daytrade.stocktrade.Models.Exceptions.LoginRejectedException;
 import com.daytrade.stocktrade.Models.User;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
@@ -11,13 +12,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
@@ -74,4 +78,18 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     response.getWriter().flush();
     response.getWriter().close();
   }
+
+  // A full login pool is not a failed login, tell the client to come back shortly
+  @Override
+  protected void unsuccessfulAuthentication(
+      HttpServletRequest request, HttpServletResponse response, AuthenticationException failed)
+      throws IOException, ServletException {
+    if (failed instanceof LoginRejectedException) {
+      SecurityContextHolder.clearContext();
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+      return;
+    }
+    super.unsuccessfulAuthentication(request, response, failed);
+  }
 }
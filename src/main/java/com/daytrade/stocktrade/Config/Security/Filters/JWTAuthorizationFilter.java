@@ -1,9 +1,7 @@
 package com.daytrade.stocktrade.Config.Security.Filters;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.TokenExpiredException;
-import com.daytrade.stocktrade.Config.Security.SecurityConsts;
+import com.daytrade.stocktrade.Services.SecurityService;
 import java.io.IOException;
 import java.util.ArrayList;
 import javax.servlet.FilterChain;
@@ -19,8 +17,12 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
   private final String AUTH_HEADER_NAME = "Authorization";
 
-  public JWTAuthorizationFilter(AuthenticationManager authenticationManager) {
+  private final SecurityService securityService;
+
+  public JWTAuthorizationFilter(
+      AuthenticationManager authenticationManager, SecurityService securityService) {
     super(authenticationManager);
+    this.securityService = securityService;
   }
 
   @Override
@@ -48,11 +50,7 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
   private UsernamePasswordAuthenticationToken getAuthentication(
       HttpServletRequest request, String token, HttpServletResponse response) throws IOException {
     try {
-      String user =
-          JWT.require(Algorithm.HMAC512(SecurityConsts.SECRET.getBytes()))
-              .build()
-              .verify(token.replace(SecurityConsts.AUTH_HEADER_PREFIX, ""))
-              .getSubject();
+      String user = securityService.getUserFromJwt(token);
       if (user != null) {
         return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
       }
@@ -0,0 +1,36 @@
+package com.daytrade.stocktrade.Config.Security;
+
+import com.daytrade.stocktrade.Services.LoginService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+// Username and password logins, checked on the login service's own pool
+@Component
+public class LoginAuthenticationProvider implements AuthenticationProvider {
+
+  private final LoginService loginService;
+
+  @Autowired
+  public LoginAuthenticationProvider(LoginService loginService) {
+    this.loginService = loginService;
+  }
+
+  @Override
+  public Authentication authenticate(Authentication authentication)
+      throws AuthenticationException {
+    String password =
+        authentication.getCredentials() == null ? "" : authentication.getCredentials().toString();
+    UserDetails user = loginService.authenticate(authentication.getName(), password);
+    return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+  }
+
+  @Override
+  public boolean supports(Class<?> authentication) {
+    return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+  }
+}
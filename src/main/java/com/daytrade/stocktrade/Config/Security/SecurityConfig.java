@@ -1,7 +1,7 @@
 package com.daytrade.stocktrade.Config.Security;
 
 import com.daytrade.stocktrade.Config.Security.Filters.*;
-import com.daytrade.stocktrade.Services.UserDetailsServiceImpl;
+import com.daytrade.stocktrade.Services.SecurityService;
 import com.google.common.collect.ImmutableList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -11,7 +11,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -19,14 +18,14 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 @EnableWebSecurity
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
-  private final UserDetailsServiceImpl userDetailsService;
-  private final PasswordEncoder bCryptPasswordEncoder;
+  private final LoginAuthenticationProvider loginAuthenticationProvider;
+  private final SecurityService securityService;
 
   @Autowired
   public SecurityConfig(
-      UserDetailsServiceImpl userDetailsService, PasswordEncoder bCryptPasswordEncoder) {
-    this.userDetailsService = userDetailsService;
-    this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+      LoginAuthenticationProvider loginAuthenticationProvider, SecurityService securityService) {
+    this.loginAuthenticationProvider = loginAuthenticationProvider;
+    this.securityService = securityService;
   }
 
   // Turn off security on signup
@@ -52,14 +51,14 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         .authenticated()
         .and()
         .addFilter(new JWTAuthenticationFilter(authenticationManager()))
-        .addFilter(new JWTAuthorizationFilter(authenticationManager()))
+        .addFilter(new JWTAuthorizationFilter(authenticationManager(), securityService))
         .sessionManagement()
         .sessionCreationPolicy(SessionCreationPolicy.STATELESS);
   }
 
   @Override
   public void configure(AuthenticationManagerBuilder auth) throws Exception {
-    auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+    auth.authenticationProvider(loginAuthenticationProvider);
   }
 
   // Turn off cors validation
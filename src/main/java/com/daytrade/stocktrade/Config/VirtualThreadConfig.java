@@ -0,0 +1,51 @@
+package com.daytrade.stocktrade.Config;
+
+import java.util.concurrent.ThreadFactory;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Opt in mode that runs servlet requests and scheduled jobs on virtual threads. Requests block on
+ * mongo, redis and the quote server, so with a thread each the limit on concurrency becomes the
+ * connection pools of those instead of the tomcat pool size.
+ *
+ * <p>The build still targets Java 11, the virtual thread builder is looked up when the mode is
+ * turned on and it needs a Java 21 or newer runtime.
+ */
+@Configuration
+@ConditionalOnProperty(name = "threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+  // Every request gets a new virtual thread, tomcat's max threads no longer applies
+  @Bean
+  TomcatProtocolHandlerCustomizer<AbstractProtocol<?>> virtualThreadExecutor() {
+    ThreadFactory threads = factory("http-");
+    return protocol -> protocol.setExecutor(command -> threads.newThread(command).start());
+  }
+
+  @Bean
+  TaskScheduler taskScheduler(@Value("${threads.scheduler-pool-size:4}") int poolSize) {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(poolSize);
+    scheduler.setThreadFactory(factory("scheduling-"));
+    return scheduler;
+  }
+
+  // Thread.ofVirtual().name(prefix, 0).factory()
+  public static ThreadFactory factory(String prefix) {
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+      virtual = builder.getMethod("name", String.class, long.class).invoke(virtual, prefix, 0L);
+      return (ThreadFactory) builder.getMethod("factory").invoke(virtual);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("threads.virtual needs a Java 21 or newer runtime", e);
+    }
+  }
+}
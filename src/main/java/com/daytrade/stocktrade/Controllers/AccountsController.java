@@ -5,8 +5,8 @@ import com.daytrade.stocktrade.Models.Enums;
 import com.daytrade.stocktrade.Models.Exceptions.EntityMissingException;
 import com.daytrade.stocktrade.Models.Summary;
 import com.daytrade.stocktrade.Services.AccountService;
+import com.daytrade.stocktrade.Services.IdempotencyService;
 import com.daytrade.stocktrade.Services.LoggerService;
-import com.daytrade.stocktrade.Services.SecurityService;
 import javax.validation.Valid;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -16,20 +16,22 @@ import org.springframework.web.bind.annotation.*;
 public class AccountsController {
 
   private final AccountService accountService;
-  private final SecurityService securityService;
   private final LoggerService loggerService;
+  private final IdempotencyService idempotencyService;
 
   public AccountsController(
-      AccountService accountService, SecurityService securityService, LoggerService loggerService) {
+      AccountService accountService,
+      LoggerService loggerService,
+      IdempotencyService idempotencyService) {
     this.accountService = accountService;
-    this.securityService = securityService;
     this.loggerService = loggerService;
+    this.idempotencyService = idempotencyService;
   }
 
   @GetMapping("/me")
-  public Account getMyAccount(@RequestHeader("authorization") String authorization)
-      throws EntityMissingException {
-    String name = securityService.getUserFromJwt(authorization);
+  public Account getMyAccount() throws EntityMissingException {
+    // Already verified by the authorization filter
+    String name = SecurityContextHolder.getContext().getAuthentication().getName();
     return accountService.getByName(name);
   }
 
@@ -44,13 +46,20 @@ public class AccountsController {
 
   @PostMapping("/add")
   public Account addFundsToAccount(@Valid @RequestBody Account account) {
-    loggerService.createCommandLog(
-        account.getName(),
+    String name = SecurityContextHolder.getContext().getAuthentication().getName();
+    return idempotencyService.execute(
+        name,
         account.getTransactionId(),
         Enums.CommandType.ADD,
-        null,
-        null,
-        account.getBalance());
-    return accountService.addFundsToAccount(account);
+        () -> {
+          loggerService.createCommandLog(
+              account.getName(),
+              account.getTransactionId(),
+              Enums.CommandType.ADD,
+              null,
+              null,
+              account.getBalance());
+          return accountService.addFundsToAccount(account);
+        });
   }
 }
@@ -1,6 +1,10 @@
 package com.daytrade.stocktrade.Controllers;
 
 import com.daytrade.stocktrade.Repositories.*;
+import com.daytrade.stocktrade.Services.IdempotencyService;
+import com.daytrade.stocktrade.Services.LogArchiver;
+import com.daytrade.stocktrade.Services.UserService;
+import java.io.IOException;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -9,34 +13,52 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/admin")
 public class AdminController {
 
-  private final UserRepository userRepository;
+  private final UserService userService;
   private final TransactionRepository transactionRepository;
   private final LoggerRepository loggerRepository;
   private final AccountRepository accountRepository;
   private final PendingTransactionRepository pendingTransactionRepository;
+  private final PendingOrderRepository pendingOrderRepository;
+  private final SummaryRepository summaryRepository;
+  private final LogArchiver logArchiver;
+  private final IdempotencyService idempotencyService;
 
   public AdminController(
-      UserRepository userRepository,
+      UserService userService,
       TransactionRepository transactionRepository,
       LoggerRepository loggerRepository,
       AccountRepository accountRepository,
-      PendingTransactionRepository pendingTransactionRepository) {
-    this.userRepository = userRepository;
+      PendingTransactionRepository pendingTransactionRepository,
+      PendingOrderRepository pendingOrderRepository,
+      SummaryRepository summaryRepository,
+      LogArchiver logArchiver,
+      IdempotencyService idempotencyService) {
+    this.userService = userService;
     this.transactionRepository = transactionRepository;
     this.loggerRepository = loggerRepository;
     this.accountRepository = accountRepository;
 
     this.pendingTransactionRepository = pendingTransactionRepository;
+    this.pendingOrderRepository = pendingOrderRepository;
+    this.summaryRepository = summaryRepository;
+    this.logArchiver = logArchiver;
+    this.idempotencyService = idempotencyService;
   }
 
   // Dumps entire db used to clear db
   @DeleteMapping("/dump")
-  public String dumpDb() {
-    userRepository.deleteAll();
+  public String dumpDb() throws IOException {
+    // Also evicts the cached users on every node
+    userService.deleteAll();
     transactionRepository.deleteAll();
     loggerRepository.deleteAll();
     accountRepository.deleteAll();
     pendingTransactionRepository.deleteAll();
+    pendingOrderRepository.deleteAll();
+    summaryRepository.deleteAll();
+    logArchiver.deleteAll();
+    // Replays reuse transactionIds, so responses from the previous run must not be replayed
+    idempotencyService.clear();
     return "Dumped";
   }
 }
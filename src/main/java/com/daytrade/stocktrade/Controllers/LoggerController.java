@@ -1,15 +1,10 @@
 package com.daytrade.stocktrade.Controllers;
 
-import com.daytrade.stocktrade.Models.Exceptions.EntityMissingException;
+import com.daytrade.stocktrade.Models.LogPage;
+import com.daytrade.stocktrade.Models.LogQuery;
 import com.daytrade.stocktrade.Models.LogRequest;
-import com.daytrade.stocktrade.Models.Logger;
 import com.daytrade.stocktrade.Services.LoggerService;
 import javax.validation.Valid;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -29,38 +24,38 @@ public class LoggerController {
 
   // This endpoint should only be able to be accessed by admin
   @GetMapping("/all")
-  public Page<Logger> getAllLogs(@PageableDefault(size = 2000) Pageable page) {
+  public LogPage getAllLogs(LogQuery query) {
     // TODO: Check caller is admin
-    return loggerService.getAllLogs(page);
+    return loggerService.getLogs(null, query, 2000);
   }
 
   // Also for admin, can access any particular user logs
   @GetMapping("/user/{userId}")
-  public Page<Logger> getLogsByUser(
-      @PathVariable("userId") String userId, @PageableDefault(size = 2000) Pageable page)
-      throws EntityMissingException {
+  public LogPage getLogsByUser(@PathVariable("userId") String userId, LogQuery query) {
     // TODO: Check caller is admin
-    return loggerService.getByUserName(userId, page);
+    return loggerService.getLogs(userId, query, 2000);
   }
 
   // Normal user can only access their own logs based of jwt
   @GetMapping("/user")
-  public Page<Logger> getLogsForUser(@PageableDefault(size = 200) Pageable page)
-      throws EntityMissingException {
+  public LogPage getLogsForUser(LogQuery query) {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
-    return loggerService.getByUserName(name, page);
+    return loggerService.getLogs(name, query, 200);
   }
 
   // Returns xml file containing all logs if username is null, otherwise returns xml file with
   // specified uesr logs
   @PostMapping("/dumplog")
   public ResponseEntity<StreamingResponseBody> getAllLogfile(
-      @Valid @RequestBody LogRequest newLogRequest)
-      throws ParserConfigurationException, TransformerException {
+      @Valid @RequestBody LogRequest newLogRequest) {
     newLogRequest.setUsername(newLogRequest.username.equals("") ? null : newLogRequest.username);
     StreamingResponseBody resource = loggerService.generateLogFile(newLogRequest);
 
-    String formattedFilename = String.format("attachment; filename=%s.xml", newLogRequest.filename);
+    String formattedFilename =
+        String.format(
+            "attachment; filename=%s.xml%s",
+            newLogRequest.filename,
+            newLogRequest.getCompression().getExtension());
     HttpHeaders headers = new HttpHeaders();
     headers.add(HttpHeaders.CONTENT_DISPOSITION, formattedFilename);
 
@@ -73,12 +68,15 @@ public class LoggerController {
   // Returns xml file of logs relevant to current user based off jwt
   @PostMapping("/user/dumplog")
   public ResponseEntity<StreamingResponseBody> getLogfileForUser(
-      @Valid @RequestBody LogRequest newLogRequest)
-      throws ParserConfigurationException, TransformerException {
+      @Valid @RequestBody LogRequest newLogRequest) {
     newLogRequest.setUsername(SecurityContextHolder.getContext().getAuthentication().getName());
     StreamingResponseBody resource = loggerService.generateLogFile(newLogRequest);
 
-    String formattedFilename = String.format("attachment; filename=%s.xml", newLogRequest.filename);
+    String formattedFilename =
+        String.format(
+            "attachment; filename=%s.xml%s",
+            newLogRequest.filename,
+            newLogRequest.getCompression().getExtension());
     HttpHeaders headers = new HttpHeaders();
     headers.add(HttpHeaders.CONTENT_DISPOSITION, formattedFilename);
 
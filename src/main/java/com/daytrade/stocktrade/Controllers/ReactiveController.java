@@ -0,0 +1,70 @@
+package com.daytrade.stocktrade.Controllers;
+
+import com.daytrade.stocktrade.Models.Account;
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Exceptions.EntityMissingException;
+import com.daytrade.stocktrade.Repositories.ReactiveAccountRepository;
+import com.daytrade.stocktrade.Services.LoggerService;
+import com.daytrade.stocktrade.Services.ReactiveQuoteService;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non blocking variants of the quote and account reads. The request thread is handed back as soon
+ * as the handler returns and the response is written when mongo, redis or the quote server answer,
+ * so slow downstreams do not hold a servlet thread each.
+ *
+ * <p>Only the quote read and /accounts/me have reactive variants. Orders, commit and cancel stay on
+ * the servlet endpoints, they go through the blocking TransactionService. Audit log writes can
+ * park when the log queue is full, so they run on the bounded elastic scheduler, never on the
+ * event loop.
+ */
+@RestController
+@RequestMapping("/reactive")
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveController {
+
+  private final ReactiveQuoteService quoteService;
+  private final ReactiveAccountRepository accountRepository;
+  private final LoggerService loggerService;
+
+  @Autowired
+  public ReactiveController(
+      ReactiveQuoteService quoteService,
+      ReactiveAccountRepository accountRepository,
+      LoggerService loggerService) {
+    this.quoteService = quoteService;
+    this.accountRepository = accountRepository;
+    this.loggerService = loggerService;
+  }
+
+  @GetMapping("/quote/{stockSym}")
+  public Mono<Map<String, Double>> getQuote(
+      @PathVariable("stockSym") String stockSym,
+      @RequestParam(name = "transactionId") String transId) {
+    // The security context is only on the request thread, read it before subscribing
+    String name = SecurityContextHolder.getContext().getAuthentication().getName();
+    return quoteService
+        .getQuote(name, stockSym, transId)
+        .publishOn(Schedulers.boundedElastic())
+        .map(
+            quote -> {
+              loggerService.createCommandLog(
+                  name, transId, Enums.CommandType.QUOTE, stockSym, null, null);
+              return Map.of(stockSym, quote.getUnitPrice());
+            });
+  }
+
+  @GetMapping("/accounts/me")
+  public Mono<Account> getMyAccount() {
+    String name = SecurityContextHolder.getContext().getAuthentication().getName();
+    return accountRepository
+        .findByName(name)
+        .switchIfEmpty(Mono.error(EntityMissingException::new));
+  }
+}
@@ -0,0 +1,20 @@
+package com.daytrade.stocktrade.Controllers;
+
+import com.daytrade.stocktrade.Models.Exceptions.ServiceBusyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+// Shed requests get a 503 with the time to wait before retrying
+@RestControllerAdvice
+public class ServiceBusyAdvice {
+
+  @ExceptionHandler(ServiceBusyException.class)
+  public ResponseEntity<String> serviceBusy(ServiceBusyException ex) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+        .body(ex.getMessage());
+  }
+}
@@ -7,6 +7,7 @@ import com.daytrade.stocktrade.Models.Exceptions.BadRequestException;
 import com.daytrade.stocktrade.Models.Exceptions.EntityMissingException;
 import com.daytrade.stocktrade.Models.Transactions.PendingTransaction;
 import com.daytrade.stocktrade.Models.Transactions.Transaction;
+import com.daytrade.stocktrade.Services.IdempotencyService;
 import com.daytrade.stocktrade.Services.LoggerService;
 import com.daytrade.stocktrade.Services.TransactionService;
 import java.util.HashMap;
@@ -21,11 +22,16 @@ public class TransactionController {
 
   private final TransactionService transactionService;
   private final LoggerService loggerService;
+  private final IdempotencyService idempotencyService;
 
   @Autowired
-  public TransactionController(TransactionService transactionService, LoggerService loggerService) {
+  public TransactionController(
+      TransactionService transactionService,
+      LoggerService loggerService,
+      IdempotencyService idempotencyService) {
     this.transactionService = transactionService;
     this.loggerService = loggerService;
+    this.idempotencyService = idempotencyService;
   }
 
   @GetMapping("/quote/{stockSym}")
@@ -51,12 +57,18 @@ public class TransactionController {
               ? Enums.CommandType.SELL
               : Enums.CommandType.BUY;
       transaction.setUserName(SecurityContextHolder.getContext().getAuthentication().getName());
-      Transaction newTransaction =
-          transaction.getType().equals(Enums.TransactionType.BUY)
-              ? transactionService.createSimpleBuyTransaction(transaction)
-              : transactionService.createSimpleSellTransaction(transaction);
-      loggerService.createTransactionCommandLog(transaction, cmdType, null);
-      return newTransaction;
+      return idempotencyService.execute(
+          transaction.getUserName(),
+          transaction.getTransactionId(),
+          cmdType,
+          () -> {
+            Transaction newTransaction =
+                transaction.getType().equals(Enums.TransactionType.BUY)
+                    ? transactionService.createSimpleBuyTransaction(transaction)
+                    : transactionService.createSimpleSellTransaction(transaction);
+            loggerService.createTransactionCommandLog(transaction, cmdType, null);
+            return newTransaction;
+          });
     } else {
       loggerService.createTransactionErrorLog(
           transaction, Enums.CommandType.BUY, "Incorrect transaction type");
@@ -73,9 +85,15 @@ public class TransactionController {
               ? Enums.CommandType.SET_SELL_AMOUNT
               : Enums.CommandType.SET_BUY_AMOUNT;
       transaction.setUserName(SecurityContextHolder.getContext().getAuthentication().getName());
-      Transaction newTransaction = transactionService.createLimitTransaction(transaction);
-      loggerService.createTransactionCommandLog(transaction, cmdType, null);
-      return newTransaction;
+      return idempotencyService.execute(
+          transaction.getUserName(),
+          transaction.getTransactionId(),
+          cmdType,
+          () -> {
+            Transaction newTransaction = transactionService.createLimitTransaction(transaction);
+            loggerService.createTransactionCommandLog(transaction, cmdType, null);
+            return newTransaction;
+          });
     } else {
       loggerService.createTransactionErrorLog(
           transaction, Enums.CommandType.SET_BUY_AMOUNT, "Incorrect transaction type");
@@ -92,12 +110,19 @@ public class TransactionController {
       cmd.setTransactionId(newTransaction.getTransactionId());
       cmd.setUsername(name);
       cmd.setType(Enums.CommandType.SET_BUY_TRIGGER);
-      PendingTransaction savedTransaction = transactionService.getPendingLimitBuyTransactions(cmd);
-      Transaction updatedTransaction =
-          transactionService.triggerLimitTransaction(savedTransaction, newTransaction);
-      loggerService.createTransactionCommandLog(
-          newTransaction, Enums.CommandType.SET_BUY_TRIGGER, null);
-      return updatedTransaction;
+      return idempotencyService.execute(
+          name,
+          cmd.getTransactionId(),
+          cmd.getType(),
+          () -> {
+            PendingTransaction savedTransaction =
+                transactionService.claimPendingLimitBuyTransaction(cmd);
+            Transaction updatedTransaction =
+                transactionService.triggerLimitTransaction(savedTransaction, newTransaction);
+            loggerService.createTransactionCommandLog(
+                newTransaction, Enums.CommandType.SET_BUY_TRIGGER, null);
+            return updatedTransaction;
+          });
     } else {
       loggerService.createTransactionErrorLog(
           newTransaction, Enums.CommandType.SET_BUY_TRIGGER, "Incorrect transaction type");
@@ -115,12 +140,19 @@ public class TransactionController {
       cmd.setTransactionId(newTransaction.getTransactionId());
       cmd.setUsername(name);
       cmd.setType(Enums.CommandType.SET_SELL_TRIGGER);
-      PendingTransaction savedTransaction = transactionService.getPendingLimitSellTransactions(cmd);
-      Transaction updatedTransaction =
-          transactionService.triggerLimitTransaction(savedTransaction, newTransaction);
-      loggerService.createTransactionCommandLog(
-          newTransaction, Enums.CommandType.SET_SELL_TRIGGER, null);
-      return updatedTransaction;
+      return idempotencyService.execute(
+          name,
+          cmd.getTransactionId(),
+          cmd.getType(),
+          () -> {
+            PendingTransaction savedTransaction =
+                transactionService.claimPendingLimitSellTransaction(cmd);
+            Transaction updatedTransaction =
+                transactionService.triggerLimitTransaction(savedTransaction, newTransaction);
+            loggerService.createTransactionCommandLog(
+                newTransaction, Enums.CommandType.SET_SELL_TRIGGER, null);
+            return updatedTransaction;
+          });
     } else {
       loggerService.createTransactionErrorLog(
           newTransaction, Enums.CommandType.SET_SELL_TRIGGER, "Incorrect transaction type");
@@ -134,9 +166,15 @@ public class TransactionController {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
     cmd.setUsername(name);
     cmd.setType(Enums.CommandType.CANCEL_SET_SELL);
+    return idempotencyService.execute(
+        name, cmd.getTransactionId(), cmd.getType(), () -> cancelSellLimit(cmd, stockTicker));
+  }
+
+  private Transaction cancelSellLimit(Command cmd, String stockTicker) {
+    String name = cmd.getUsername();
     try {
       Transaction savedTransaction =
-          transactionService.getPendingLimitSellTransactionsByTicker(stockTicker);
+          transactionService.claimPendingLimitSellTransactionByTicker(stockTicker);
       savedTransaction.setStatus(Enums.TransactionStatus.CANCELED);
       savedTransaction.setTransactionId(cmd.getTransactionId());
       Transaction cancelledTransaction =
@@ -146,7 +184,7 @@ public class TransactionController {
       return cancelledTransaction;
     } catch (EntityMissingException ex) {
       Transaction savedTransaction =
-          transactionService.getCommittedLimitSellTransactionsByTicker(stockTicker, cmd);
+          transactionService.cancelCommittedLimitSellTransactionByTicker(stockTicker, cmd);
       savedTransaction.setStatus(Enums.TransactionStatus.CANCELED);
       loggerService.createErrorEventLog(
           name,
@@ -166,19 +204,24 @@ public class TransactionController {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
     cmd.setUsername(name);
     cmd.setType(Enums.CommandType.CANCEL_SET_BUY);
+    return idempotencyService.execute(
+        name, cmd.getTransactionId(), cmd.getType(), () -> cancelBuyLimit(cmd, stockTicker));
+  }
+
+  private Transaction cancelBuyLimit(Command cmd, String stockTicker) {
     try {
       Transaction savedTransaction =
-          transactionService.getPendingLimitBuyTransactionsByTicker(stockTicker);
+          transactionService.claimPendingLimitBuyTransactionByTicker(stockTicker);
       savedTransaction.setStatus(Enums.TransactionStatus.CANCELED);
       savedTransaction.setTransactionId(cmd.getTransactionId());
       Transaction cancelledTransaction =
           transactionService.cancelBuyLimitTransaction(savedTransaction);
       loggerService.createCommandLog(
-          name, cmd.getTransactionId(), cmd.getType(), stockTicker, null, null);
+          cmd.getUsername(), cmd.getTransactionId(), cmd.getType(), stockTicker, null, null);
       return cancelledTransaction;
     } catch (EntityMissingException ex) {
       Transaction savedTransaction =
-          transactionService.getCommittedLimitBuyTransactionsByTicker(stockTicker, cmd);
+          transactionService.cancelCommittedLimitBuyTransactionByTicker(stockTicker, cmd);
       return transactionService.cancelBuyLimitTransaction(savedTransaction);
     }
   }
@@ -188,11 +231,18 @@ public class TransactionController {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
     cmd.setUsername(name);
     cmd.setType(Enums.CommandType.CANCEL_BUY);
-    Transaction transaction = transactionService.getPendingBuyTransactions(cmd);
-    transaction.setStatus(Enums.TransactionStatus.CANCELED);
-    Transaction cancelledTransaction = transactionService.cancelTransaction(transaction);
-    loggerService.createCommandLog(name, cmd.getTransactionId(), cmd.getType(), null, null, null);
-    return cancelledTransaction;
+    return idempotencyService.execute(
+        name,
+        cmd.getTransactionId(),
+        cmd.getType(),
+        () -> {
+          PendingTransaction transaction = transactionService.getPendingBuyTransactions(cmd);
+          transaction.setStatus(Enums.TransactionStatus.CANCELED);
+          Transaction cancelledTransaction = transactionService.cancelTransaction(transaction);
+          loggerService.createCommandLog(
+              name, cmd.getTransactionId(), cmd.getType(), null, null, null);
+          return cancelledTransaction;
+        });
   }
 
   @PostMapping("/sell/cancel")
@@ -200,11 +250,18 @@ public class TransactionController {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
     cmd.setUsername(name);
     cmd.setType(Enums.CommandType.CANCEL_SELL);
-    Transaction transaction = transactionService.getPendingSellTransactions(cmd);
-    transaction.setStatus(Enums.TransactionStatus.CANCELED);
-    Transaction cancelledTransaction = transactionService.cancelTransaction(transaction);
-    loggerService.createCommandLog(name, cmd.getTransactionId(), cmd.getType(), null, null, null);
-    return cancelledTransaction;
+    return idempotencyService.execute(
+        name,
+        cmd.getTransactionId(),
+        cmd.getType(),
+        () -> {
+          PendingTransaction transaction = transactionService.getPendingSellTransactions(cmd);
+          transaction.setStatus(Enums.TransactionStatus.CANCELED);
+          Transaction cancelledTransaction = transactionService.cancelTransaction(transaction);
+          loggerService.createCommandLog(
+              name, cmd.getTransactionId(), cmd.getType(), null, null, null);
+          return cancelledTransaction;
+        });
   }
 
   @PostMapping("/sell/commit")
@@ -212,10 +269,17 @@ public class TransactionController {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
     cmd.setUsername(name);
     cmd.setType(Enums.CommandType.COMMIT_SELL);
-    PendingTransaction transaction = transactionService.getPendingSellTransactions(cmd);
-    Transaction commitedTransaction = transactionService.commitSimpleOrder(transaction);
-    loggerService.createCommandLog(name, cmd.getTransactionId(), cmd.getType(), null, null, null);
-    return transactionService.updateAccount(commitedTransaction);
+    return idempotencyService.execute(
+        name,
+        cmd.getTransactionId(),
+        cmd.getType(),
+        () -> {
+          PendingTransaction transaction = transactionService.getPendingSellTransactions(cmd);
+          Transaction commitedTransaction = transactionService.commitSimpleOrder(transaction);
+          loggerService.createCommandLog(
+              name, cmd.getTransactionId(), cmd.getType(), null, null, null);
+          return transactionService.updateAccount(commitedTransaction);
+        });
   }
 
   @PostMapping("/buy/commit")
@@ -223,9 +287,16 @@ public class TransactionController {
     String name = SecurityContextHolder.getContext().getAuthentication().getName();
     cmd.setUsername(name);
     cmd.setType(Enums.CommandType.COMMIT_BUY);
-    PendingTransaction transaction = transactionService.getPendingBuyTransactions(cmd);
-    Transaction committedTransaction = transactionService.commitSimpleOrder(transaction);
-    loggerService.createCommandLog(name, cmd.getTransactionId(), cmd.getType(), null, null, null);
-    return transactionService.updateAccount(committedTransaction);
+    return idempotencyService.execute(
+        name,
+        cmd.getTransactionId(),
+        cmd.getType(),
+        () -> {
+          PendingTransaction transaction = transactionService.getPendingBuyTransactions(cmd);
+          Transaction committedTransaction = transactionService.commitSimpleOrder(transaction);
+          loggerService.createCommandLog(
+              name, cmd.getTransactionId(), cmd.getType(), null, null, null);
+          return transactionService.updateAccount(committedTransaction);
+        });
   }
 }
@@ -1,5 +1,6 @@
 package com.daytrade.stocktrade.Models;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
@@ -11,7 +12,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "accounts")
 @Data
-public class Account {
+public class Account implements Serializable {
 
   public Account() {}
 
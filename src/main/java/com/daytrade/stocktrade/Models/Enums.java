@@ -45,4 +45,20 @@ public class Enums {
     ErrorEventType,
     DebugType
   }
+
+  public enum Compression {
+    NONE(""),
+    GZIP(".gz"),
+    ZSTD(".zst");
+
+    private final String extension;
+
+    Compression(String extension) {
+      this.extension = extension;
+    }
+
+    public String getExtension() {
+      return extension;
+    }
+  }
 }
@@ -0,0 +1,10 @@
+package com.daytrade.stocktrade.Models.Exceptions;
+
+import org.springframework.security.core.AuthenticationException;
+
+// Login was turned away because the login executor is full, the client should retry later
+public class LoginRejectedException extends AuthenticationException {
+  public LoginRejectedException() {
+    super("Too many logins in progress");
+  }
+}
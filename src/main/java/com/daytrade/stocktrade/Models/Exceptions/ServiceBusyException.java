@@ -0,0 +1,16 @@
+package com.daytrade.stocktrade.Models.Exceptions;
+
+// Shed because a bulkhead is full, the client should retry after the given delay
+public class ServiceBusyException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public ServiceBusyException(String bulkhead, long retryAfterSeconds) {
+    super("Too many " + bulkhead + " requests in progress");
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
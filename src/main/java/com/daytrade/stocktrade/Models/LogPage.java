@@ -0,0 +1,18 @@
+package com.daytrade.stocktrade.Models;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class LogPage {
+
+  public LogPage(List<Logger> content, String next) {
+    this.content = content;
+    this.next = next;
+  }
+
+  public List<Logger> content;
+
+  // Pass as "after" to get the next page, null on the last page
+  public String next;
+}
@@ -0,0 +1,21 @@
+package com.daytrade.stocktrade.Models;
+
+import java.time.Instant;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+@Data
+public class LogQuery {
+  // Continuation token returned with the previous page
+  public String after;
+  public Integer size;
+
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  public Instant from;
+
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  public Instant to;
+
+  public Enums.CommandType command;
+  public String transactionNumber;
+}
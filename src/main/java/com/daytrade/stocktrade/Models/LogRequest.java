@@ -7,4 +7,9 @@ public class LogRequest {
   public String username;
   public String filename;
   public String transactionId;
+  public Enums.Compression compression;
+
+  public Enums.Compression getCompression() {
+    return compression == null ? Enums.Compression.NONE : compression;
+  }
 }
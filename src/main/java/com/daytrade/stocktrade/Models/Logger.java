@@ -1,15 +1,29 @@
 package com.daytrade.stocktrade.Models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.time.Instant;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import lombok.Data;
-import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "logs")
+@CompoundIndexes({
+  // Keyset pages of /logs are ordered by timestamp then id, filters come before the sort keys
+  @CompoundIndex(name = "timestamp_id", def = "{'timestamp': 1, '_id': 1}"),
+  @CompoundIndex(name = "user_timestamp_id", def = "{'userName': 1, 'timestamp': 1, '_id': 1}"),
+  @CompoundIndex(
+      name = "command_timestamp_id",
+      def = "{'commandType': 1, 'timestamp': 1, '_id': 1}"),
+  @CompoundIndex(
+      name = "transaction_timestamp_id",
+      def = "{'transactionNumber': 1, 'timestamp': 1, '_id': 1}"),
+  // Per server cursors of the merged dumplog
+  @CompoundIndex(name = "server_timestamp", def = "{'serverName': 1, 'timestamp': 1}")
+})
 @Data
 public class Logger {
 
@@ -19,6 +33,8 @@ public class Logger {
     this.logType = logType;
     this.serverName = serverName;
     this.transactionNumber = transactionNumber;
+    // Set here rather than audited on insert, logs are written in batches after the event
+    this.timestamp = Instant.now();
   }
 
   @Id public String id;
@@ -31,9 +47,9 @@ public class Logger {
 
   private Enums.CommandType commandType;
 
-  @Indexed private String userName;
+  private String userName;
 
-  @CreatedDate @Indexed private Instant timestamp;
+  private Instant timestamp;
 
   private String stockSymbol;
 
@@ -50,4 +66,7 @@ public class Logger {
   private String action;
 
   private String message;
+
+  // Dumplog fragment rendered when the log is stored, entries never change after that
+  @JsonIgnore private String xml;
 }
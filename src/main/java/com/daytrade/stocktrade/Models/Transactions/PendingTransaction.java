@@ -2,9 +2,19 @@ package com.daytrade.stocktrade.Models.Transactions;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @EqualsAndHashCode(callSuper = true)
 @Document(collection = "pending_transactions")
+@CompoundIndexes({
+  @CompoundIndex(name = "user_type_created", def = "{'userName': 1, 'type': 1, 'createdDate': 1}"),
+  @CompoundIndex(
+      name = "user_type_stock_created",
+      def = "{'userName': 1, 'type': 1, 'stockCode': 1, 'createdDate': 1}"),
+  @CompoundIndex(name = "user_created", def = "{'userName': 1, 'createdDate': 1}"),
+  @CompoundIndex(name = "created", def = "{'createdDate': 1}")
+})
 @Data
 public class PendingTransaction extends Transaction {}
@@ -1,6 +1,7 @@
 package com.daytrade.stocktrade.Models.Transactions;
 
 import com.daytrade.stocktrade.Models.Enums;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
@@ -9,17 +10,31 @@ import javax.validation.constraints.NotNull;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+// Indexes follow the repository queries: equality fields, then the sort, then ranges
 @Document(collection = "transactions")
+@CompoundIndexes({
+  @CompoundIndex(
+      name = "user_type_status_created",
+      def = "{'userName': 1, 'type': 1, 'status': 1, 'createdDate': 1}"),
+  @CompoundIndex(
+      name = "user_type_status_stock_created",
+      def = "{'userName': 1, 'type': 1, 'status': 1, 'stockCode': 1, 'createdDate': 1}"),
+  @CompoundIndex(name = "status_type", def = "{'status': 1, 'type': 1}"),
+  @CompoundIndex(
+      name = "user_created_status",
+      def = "{'userName': 1, 'createdDate': 1, 'status': 1}")
+})
 @Data
-public class Transaction {
+public class Transaction implements Serializable {
   @Id public String id;
 
-  @Indexed private Enums.TransactionStatus status;
+  private Enums.TransactionStatus status;
 
-  @NotNull @Indexed private Enums.TransactionType type;
+  @NotNull private Enums.TransactionType type;
 
   @NotNull @NotBlank private String stockCode;
 
@@ -27,9 +42,9 @@ public class Transaction {
 
   private Double cashAmount;
 
-  @Indexed private String userName;
+  private String userName;
 
-  @CreatedDate @Indexed private Instant createdDate;
+  @CreatedDate private Instant createdDate;
 
   private String transactionId;
 
@@ -25,4 +25,7 @@ public class User {
   private String securityCode;
 
   @NotNull @NotBlank private String password;
+
+  // Rate limit tier, set by an admin in mongo, null for the default tier
+  private String tier;
 }
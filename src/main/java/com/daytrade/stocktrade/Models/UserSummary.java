@@ -0,0 +1,56 @@
+package com.daytrade.stocktrade.Models;
+
+import com.daytrade.stocktrade.Models.Transactions.PendingTransaction;
+import com.daytrade.stocktrade.Models.Transactions.Transaction;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Read model for DISPLAY_SUMMARY, kept up to date as orders change status
+@Document(collection = "summaries")
+@Data
+public class UserSummary {
+
+  public UserSummary() {}
+
+  public UserSummary(String username) {
+    this.username = username;
+  }
+
+  @Id private String username;
+
+  private Account account;
+
+  // Keyed by order id so entries can be set and unset without reading the document
+  private Map<String, PendingTransaction> pendingTransactions = new HashMap<>();
+
+  private Map<String, Transaction> openTriggers = new HashMap<>();
+
+  // Capped to the most recent orders on every push
+  private List<Transaction> closedTransactions = new ArrayList<>();
+
+  public Summary toSummary() {
+    Summary summary = new Summary(username, account);
+    summary.setPendingTransactions(sortByCreatedDate(pendingTransactions.values()));
+    summary.setOpenTriggers(sortByCreatedDate(openTriggers.values()));
+    summary.setClosedTransactions(closedTransactions);
+    return summary;
+  }
+
+  private static <T extends Transaction> List<T> sortByCreatedDate(Collection<T> transactions) {
+    return transactions.stream()
+        .sorted(
+            Comparator.comparing(
+                Transaction::getCreatedDate,
+                Comparator.nullsLast(Comparator.<Instant>naturalOrder())))
+        .collect(Collectors.toList());
+  }
+}
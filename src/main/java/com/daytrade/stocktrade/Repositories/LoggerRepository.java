@@ -1,16 +1,49 @@
 package com.daytrade.stocktrade.Repositories;
 
 import com.daytrade.stocktrade.Models.Logger;
-import java.util.List;
+import java.time.Instant;
 import java.util.Optional;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import java.util.stream.Stream;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface LoggerRepository extends MongoRepository<Logger, String> {
-  List<Logger> findAllByUserName(String username);
+  int CURSOR_BATCH_SIZE = 2000;
+  // Dumps only copy the pre-rendered fragment
+  String DUMP_FIELDS = "{ 'xml': 1 }";
 
-  Optional<Page<Logger>> findByUserName(String username, Pageable pageable);
+  // Cursor backed reads for dumplog, callers must close the stream
+  @Meta(cursorBatchSize = CURSOR_BATCH_SIZE)
+  @Query(value = "{}", fields = DUMP_FIELDS)
+  Stream<Logger> streamAllBy();
+
+  @Meta(cursorBatchSize = CURSOR_BATCH_SIZE)
+  @Query(value = "{ 'userName': ?0 }", fields = DUMP_FIELDS)
+  Stream<Logger> streamByUserName(String username);
+
+  @Meta(cursorBatchSize = CURSOR_BATCH_SIZE)
+  @Query(
+      value = "{ 'timestamp': { '$gte': ?0, '$lt': ?1 } }",
+      fields = DUMP_FIELDS,
+      sort = "{ 'timestamp': 1 }")
+  Stream<Logger> streamByTimestampRange(Instant from, Instant to);
+
+  @Meta(cursorBatchSize = CURSOR_BATCH_SIZE)
+  @Query(
+      value = "{ 'userName': ?0, 'timestamp': { '$gte': ?1, '$lt': ?2 } }",
+      fields = DUMP_FIELDS,
+      sort = "{ 'timestamp': 1 }")
+  Stream<Logger> streamByUserNameAndTimestampRange(String username, Instant from, Instant to);
+
+  // Bounds of the timestamp range split up for segmented dumps
+  Optional<Logger> findFirstByOrderByTimestampAsc();
+
+  Optional<Logger> findFirstByOrderByTimestampDesc();
+
+  Optional<Logger> findFirstByUserNameOrderByTimestampAsc(String username);
+
+  Optional<Logger> findFirstByUserNameOrderByTimestampDesc(String username);
 }
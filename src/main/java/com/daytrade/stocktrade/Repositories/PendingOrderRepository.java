@@ -0,0 +1,226 @@
+package com.daytrade.stocktrade.Repositories;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Transactions.PendingTransaction;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.bson.types.ObjectId;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RDeque;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.PatternMessageListener;
+import org.redisson.api.redisnode.RedisMaster;
+import org.redisson.api.redisnode.RedisNodes;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Simple BUY/SELL orders only live for a minute so they are kept in redis instead of mongo. Orders
+ * are stored in a hash by id, every user/type pair has a deque of ids with the newest first, and
+ * each order has a marker key with a ttl. Expiry is driven by redis keyspace notifications on the
+ * marker keys, so redis must run with notify-keyspace-events containing "Ex". Redis drops
+ * notifications nobody was subscribed for, so a periodic sweep expires whatever they missed. Only
+ * one node sweeps at a time.
+ */
+@Repository
+public class PendingOrderRepository {
+
+  public static final long TTL_SECONDS = 60;
+
+  private static final Logger log = LoggerFactory.getLogger(PendingOrderRepository.class);
+
+  private static final String ORDERS = "pending-orders";
+  private static final String TTL_PREFIX = ORDERS + ":ttl:";
+  // Notifications normally expire an order right away, the sweep only takes orders past this
+  private static final long SWEEP_GRACE_SECONDS = 5;
+  private static final String NOTIFY_EVENTS = "notify-keyspace-events";
+
+  private final RedissonClient redissonClient;
+  private final RMap<String, PendingTransaction> orders;
+  private final RLock sweepLock;
+  private final boolean configureNotifications;
+
+  public PendingOrderRepository(
+      RedissonClient redissonClient,
+      @Value("${pending-orders.configure-notifications:true}") boolean configureNotifications) {
+    this.redissonClient = redissonClient;
+    this.orders = redissonClient.getMap(ORDERS);
+    this.sweepLock = redissonClient.getLock(ORDERS + ":sweep-lock");
+    this.configureNotifications = configureNotifications;
+  }
+
+  // The order, its id in the user's deque and its marker are written in one transaction
+  public PendingTransaction save(PendingTransaction transaction) {
+    transaction.setId(new ObjectId().toHexString());
+    transaction.setCreatedDate(Instant.now());
+    RBatch batch =
+        redissonClient.createBatch(
+            BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+    batch.<String, PendingTransaction>getMap(ORDERS).fastPutAsync(transaction.getId(), transaction);
+    batch
+        .<String>getDeque(idsKey(transaction.getUserName(), transaction.getType()))
+        .addFirstAsync(transaction.getId());
+    batch
+        .<String>getBucket(TTL_PREFIX + transaction.getId(), StringCodec.INSTANCE)
+        .setAsync(transaction.getUserName(), TTL_SECONDS, TimeUnit.SECONDS);
+    batch.execute();
+    return transaction;
+  }
+
+  // Most recent order that has not expired, pruning ids whose order is already gone
+  public Optional<PendingTransaction> findMostRecent(String userName, Enums.TransactionType type) {
+    RDeque<String> ids = ids(userName, type);
+    String id;
+    while ((id = ids.peekFirst()) != null) {
+      PendingTransaction transaction = orders.get(id);
+      if (transaction != null) {
+        // Older orders can only be older still, so stop at the first expired one
+        return isExpired(transaction) ? Optional.empty() : Optional.of(transaction);
+      }
+      ids.remove(id);
+    }
+    return Optional.empty();
+  }
+
+  public List<PendingTransaction> findByUserName(String userName) {
+    List<PendingTransaction> pending = new ArrayList<>();
+    for (Enums.TransactionType type :
+        List.of(Enums.TransactionType.BUY, Enums.TransactionType.SELL)) {
+      for (String id : ids(userName, type).readAll()) {
+        PendingTransaction transaction = orders.get(id);
+        if (transaction != null && !isExpired(transaction)) {
+          pending.add(transaction);
+        }
+      }
+    }
+    return pending;
+  }
+
+  // Returns true only for the caller that actually removed the order
+  public boolean delete(PendingTransaction transaction) {
+    boolean removed = orders.fastRemove(transaction.getId()) == 1;
+    ids(transaction.getUserName(), transaction.getType()).remove(transaction.getId());
+    redissonClient.getBucket(TTL_PREFIX + transaction.getId()).delete();
+    return removed;
+  }
+
+  /**
+   * Register a handler for orders whose marker key expired. Every node receives the notification,
+   * removing the order from the hash is the claim so only one of them handles each order. Orders
+   * are handled on the executor, the listener runs on redisson's pub/sub thread which must not
+   * block. Fails when redis does not send expiry notifications and they can not be turned on.
+   */
+  public void onExpired(Executor executor, Consumer<PendingTransaction> handler) {
+    checkNotifications();
+    redissonClient
+        .getPatternTopic("__keyevent@*__:expired", StringCodec.INSTANCE)
+        .addListener(
+            String.class,
+            (PatternMessageListener<String>)
+                (pattern, channel, key) -> {
+                  if (key.startsWith(TTL_PREFIX)) {
+                    String id = key.substring(TTL_PREFIX.length());
+                    executor.execute(() -> tryExpire(id, handler));
+                  }
+                });
+  }
+
+  /**
+   * Expire orders whose notification never arrived, because no node was subscribed, the marker
+   * was never written or handling it failed. Claims the same way as the notifications do. Only one
+   * node reads the whole hash per sweep, the others skip the run.
+   */
+  public void expireMissed(Consumer<PendingTransaction> handler) {
+    if (!sweepLock.tryLock()) {
+      return;
+    }
+    try {
+      Instant cutoff = Instant.now().minusSeconds(TTL_SECONDS + SWEEP_GRACE_SECONDS);
+      for (PendingTransaction transaction : orders.values()) {
+        if (transaction.getCreatedDate().isBefore(cutoff)) {
+          tryExpire(transaction.getId(), handler);
+        }
+      }
+    } finally {
+      sweepLock.unlock();
+    }
+  }
+
+  // A failed order is left for the next sweep, the other orders still expire
+  private void tryExpire(String id, Consumer<PendingTransaction> handler) {
+    try {
+      expire(id, handler);
+    } catch (RuntimeException e) {
+      log.error("Expiring pending order {} failed", id, e);
+    }
+  }
+
+  // An order whose handler fails is put back so the next sweep tries it again
+  private void expire(String id, Consumer<PendingTransaction> handler) {
+    PendingTransaction transaction = orders.remove(id);
+    if (transaction == null) {
+      return;
+    }
+    ids(transaction.getUserName(), transaction.getType()).remove(id);
+    Enums.TransactionStatus status = transaction.getStatus();
+    try {
+      handler.accept(transaction);
+    } catch (RuntimeException e) {
+      transaction.setStatus(status);
+      orders.fastPut(id, transaction);
+      throw e;
+    }
+  }
+
+  // Turns on expired key events, keeping any other events already configured
+  private void checkNotifications() {
+    RedisMaster redis = redissonClient.getRedisNodes(RedisNodes.SINGLE).getInstance();
+    String events = notifyEvents(redis);
+    if (hasExpiredEvents(events)) {
+      return;
+    }
+    if (configureNotifications) {
+      redis.setConfig(NOTIFY_EVENTS, events + (events.contains("E") ? "" : "E") + "x");
+      events = notifyEvents(redis);
+    }
+    if (!hasExpiredEvents(events)) {
+      throw new IllegalStateException(
+          "Redis must run with notify-keyspace-events containing Ex, pending orders never expire");
+    }
+  }
+
+  private static String notifyEvents(RedisMaster redis) {
+    return redis.getConfig(NOTIFY_EVENTS).getOrDefault(NOTIFY_EVENTS, "");
+  }
+
+  private static boolean hasExpiredEvents(String events) {
+    return events.contains("E") && (events.contains("x") || events.contains("A"));
+  }
+
+  public void deleteAll() {
+    redissonClient.getKeys().deleteByPattern(ORDERS + "*");
+  }
+
+  private static boolean isExpired(PendingTransaction transaction) {
+    return transaction.getCreatedDate().isBefore(Instant.now().minusSeconds(TTL_SECONDS));
+  }
+
+  private RDeque<String> ids(String userName, Enums.TransactionType type) {
+    return redissonClient.getDeque(idsKey(userName, type));
+  }
+
+  private static String idsKey(String userName, Enums.TransactionType type) {
+    return ORDERS + ":" + userName + ":" + type.name();
+  }
+}
@@ -0,0 +1,13 @@
+package com.daytrade.stocktrade.Repositories;
+
+import com.daytrade.stocktrade.Models.Account;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+// Non blocking mirror of AccountRepository for the reactive endpoints
+@Repository
+public interface ReactiveAccountRepository extends ReactiveMongoRepository<Account, String> {
+
+  Mono<Account> findByName(String name);
+}
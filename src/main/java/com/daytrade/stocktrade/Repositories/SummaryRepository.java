@@ -0,0 +1,8 @@
+package com.daytrade.stocktrade.Repositories;
+
+import com.daytrade.stocktrade.Models.UserSummary;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SummaryRepository extends MongoRepository<UserSummary, String> {}
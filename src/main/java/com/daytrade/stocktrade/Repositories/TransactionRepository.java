@@ -3,27 +3,22 @@ package com.daytrade.stocktrade.Repositories;
 import com.daytrade.stocktrade.Models.Enums;
 import com.daytrade.stocktrade.Models.Transactions.Transaction;
 import java.util.List;
+import java.util.stream.Stream;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface TransactionRepository extends MongoRepository<Transaction, String> {
 
-  List<Transaction> findByUserNameAndTypeAndStatusOrderByCreatedDate(
-      String s, Enums.TransactionType type, Enums.TransactionStatus status);
-
-  List<Transaction> findByUserNameAndTypeAndStatusAndStockCodeOrderByCreatedDate(
-      String userName,
-      Enums.TransactionType sellAt,
-      Enums.TransactionStatus pending,
-      String stockCode);
-
   List<Transaction> findAllByStatusAndType(
       Enums.TransactionStatus status, Enums.TransactionType type);
 
   List<Transaction> findByUserNameAndStatusInOrderByCreatedDate(
       String name, List<Enums.TransactionStatus> status);
 
-  List<Transaction> findByUserNameAndStatusNotInOrderByCreatedDate(
+  // Full order history, cursor backed so callers must close the stream
+  @Meta(cursorBatchSize = 500)
+  Stream<Transaction> streamByUserNameAndStatusNotInOrderByCreatedDate(
       String username, List<Enums.TransactionStatus> status);
 }
@@ -8,11 +8,13 @@ import com.daytrade.stocktrade.Models.Summary;
 import com.daytrade.stocktrade.Models.Transactions.PendingTransaction;
 import com.daytrade.stocktrade.Models.Transactions.Transaction;
 import com.daytrade.stocktrade.Repositories.AccountRepository;
+import com.daytrade.stocktrade.Repositories.PendingOrderRepository;
 import com.daytrade.stocktrade.Repositories.PendingTransactionRepository;
 import com.daytrade.stocktrade.Repositories.TransactionRepository;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,7 +26,9 @@ public class AccountService {
   private final AccountRepository accountRepository;
   private final TransactionRepository transactionRepository;
   private final PendingTransactionRepository pendingTransactionRepository;
+  private final PendingOrderRepository pendingOrderRepository;
   private final LoggerService loggerService;
+  private final SummaryService summaryService;
   private final Boolean debug;
 
   @Autowired
@@ -33,11 +37,15 @@ public class AccountService {
       LoggerService loggerService,
       TransactionRepository transactionRepository,
       PendingTransactionRepository pendingTransactionRepository,
+      PendingOrderRepository pendingOrderRepository,
+      SummaryService summaryService,
       @Value("${security.debug}") Boolean debug) {
     this.accountRepository = accountRepository;
     this.loggerService = loggerService;
     this.transactionRepository = transactionRepository;
     this.pendingTransactionRepository = pendingTransactionRepository;
+    this.pendingOrderRepository = pendingOrderRepository;
+    this.summaryService = summaryService;
     this.debug = debug;
   }
 
@@ -68,7 +76,7 @@ public class AccountService {
           name, request.getTransactionId(), "add", request.getBalance());
 
     account.setName(name);
-    return accountRepository.save(account);
+    return save(account);
   }
 
   public Account getByName(String name) throws EntityMissingException {
@@ -76,11 +84,15 @@ public class AccountService {
   }
 
   public Account createNewAccount(String username) {
-    return accountRepository.save(new Account(username));
+    Account account = accountRepository.save(new Account(username));
+    summaryService.rebuild(account, List.of(), List.of(), List.of());
+    return account;
   }
 
   public Account save(Account account) {
-    return accountRepository.save(account);
+    Account saved = accountRepository.save(account);
+    summaryService.updateAccount(saved);
+    return saved;
   }
 
   public Account refundStockFromTransaction(Transaction transaction) {
@@ -89,26 +101,30 @@ public class AccountService {
     long newStockAmount = stocks.get(transaction.getStockCode()) + transaction.getStockAmount();
     stocks.put(transaction.getStockCode(), newStockAmount);
     account.setPortfolio(stocks);
-    return accountRepository.save(account);
+    return save(account);
   }
 
   public Summary generateSummary(String username) throws EntityMissingException {
+    return summaryService.getSummary(username).orElseGet(() -> rebuildSummary(username));
+  }
+
+  // Seed the summary read model from the raw collections
+  private Summary rebuildSummary(String username) throws EntityMissingException {
     Account summaryAccount = getByName(username);
 
     List<Enums.TransactionStatus> status = new ArrayList<>();
     status.add(Enums.TransactionStatus.COMMITTED);
-    // Only gets 1 page of transactions but whatever... TODO...
+    // Limit orders wait in mongo, simple orders in redis
     List<PendingTransaction> pendingTransactions =
         pendingTransactionRepository.findByUserNameOrderByCreatedDate(username);
-    List<Transaction> closedTransactions =
-        transactionRepository.findByUserNameAndStatusNotInOrderByCreatedDate(username, status);
+    pendingTransactions.addAll(pendingOrderRepository.findByUserName(username));
     List<Transaction> openTriggers =
         transactionRepository.findByUserNameAndStatusInOrderByCreatedDate(username, status);
-
-    Summary newSummary = new Summary(username, summaryAccount);
-    newSummary.setPendingTransactions(pendingTransactions);
-    newSummary.setOpenTriggers(openTriggers);
-    newSummary.setClosedTransactions(closedTransactions);
-    return newSummary;
+    // The closed history is unbounded, read it off a cursor
+    try (Stream<Transaction> closedTransactions =
+        transactionRepository.streamByUserNameAndStatusNotInOrderByCreatedDate(username, status)) {
+      return summaryService.rebuild(
+          summaryAccount, pendingTransactions, openTriggers, closedTransactions);
+    }
   }
 }
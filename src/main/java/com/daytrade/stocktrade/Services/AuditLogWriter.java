@@ -0,0 +1,505 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Takes audit logs off the request path. Logs go into a bounded lock free queue and a single
+ * background thread writes them to mongo in unordered bulk inserts, flushing a batch when it is
+ * full or when the oldest entry has waited long enough. What happens when the queue is full is
+ * configurable: BLOCK waits for space, DROP_DEBUG drops debug logs and blocks for the rest, SPILL
+ * appends to a local file that is written back once the queue has drained.
+ *
+ * <p>While mongo is unreachable batches go to the spill file and mongo is retried with a growing
+ * backoff. A batch mongo rejects for its data is inserted log by log, and the logs that are still
+ * rejected go to the dead letter file instead of coming back around.
+ *
+ * <p>With the JOURNAL sink logs are appended to a memory mapped journal on local disk instead, and
+ * are indexed into mongo from there in the background. The overflow setting does not apply.
+ *
+ * <p>Logs written while a request is open on the thread are held until the request ends and then
+ * handed over in one batch, instead of one queue or journal write per log.
+ */
+@Service
+public class AuditLogWriter {
+
+  private static final int DUPLICATE_KEY = 11000;
+  // How long the idle writer sleeps before looking at the spill file again
+  private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // Backoff after mongo was unreachable, doubled on every failure in a row
+  private static final long RETRY_MS = 1000;
+  private static final long MAX_RETRY_MS = 30000;
+
+  public enum Overflow {
+    BLOCK,
+    DROP_DEBUG,
+    SPILL
+  }
+
+  public enum Sink {
+    QUEUE,
+    JOURNAL
+  }
+
+  private final MongoTemplate mongoTemplate;
+  private final ObjectMapper objectMapper;
+  private final int capacity;
+  private final int batchSize;
+  private final long maxWaitMs;
+  private final Overflow overflow;
+  private final Path spillFile;
+  private final Path drainingFile;
+  private final Path deadLetterFile;
+  private final long flushTimeoutMs;
+
+  private final ConcurrentLinkedQueue<Logger> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  // Sequence numbers so flush can wait for its own logs without waiting for an empty queue
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final Counter dropped;
+  private final Counter spilled;
+  private final Counter renderFailed;
+  private final Counter deadLettered;
+  private final Timer batchTimer;
+  // Not a monitor, the spill file is written while holding it
+  private final ReentrantLock spillLock = new ReentrantLock();
+  private final Thread writer;
+  private final LogJournal journal;
+  // Logs of the request running on this thread, null outside of a request
+  private final ThreadLocal<List<Logger>> requestLogs = new ThreadLocal<>();
+  private volatile boolean running = true;
+  // Set while the writer is parked, producers only unpark it then
+  private volatile boolean idle;
+  // Set when logs were spilled, and at startup for spill files left by the last run
+  private volatile boolean spillWaiting = true;
+  // Writer thread only: lines of the draining file already queued, and the mongo backoff
+  private long drained;
+  private long retryAt;
+  private int retries;
+
+  @Autowired
+  public AuditLogWriter(
+      MongoTemplate mongoTemplate,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      @Value("${audit-log.capacity:65536}") int capacity,
+      @Value("${audit-log.batch-size:500}") int batchSize,
+      @Value("${audit-log.max-wait-ms:50}") long maxWaitMs,
+      @Value("${audit-log.overflow:BLOCK}") Overflow overflow,
+      @Value("${audit-log.spill-file:audit-log-spill.jsonl}") String spillFile,
+      @Value("${audit-log.dead-letter-file:audit-log-dead-letter.jsonl}") String deadLetterFile,
+      @Value("${audit-log.flush-timeout-ms:30000}") long flushTimeoutMs,
+      @Value("${audit-log.sink:QUEUE}") Sink sink,
+      @Value("${audit-log.journal.directory:audit-log-journal}") String journalDirectory,
+      @Value("${audit-log.journal.segment-size:67108864}") int segmentSize,
+      @Value("${audit-log.journal.max-attempts:5}") int journalMaxAttempts)
+      throws IOException {
+    this.mongoTemplate = mongoTemplate;
+    this.objectMapper = objectMapper;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.maxWaitMs = maxWaitMs;
+    this.overflow = overflow;
+    this.spillFile = Paths.get(spillFile);
+    this.drainingFile = Paths.get(spillFile + ".draining");
+    this.deadLetterFile = Paths.get(deadLetterFile);
+    this.flushTimeoutMs = flushTimeoutMs;
+    this.dropped = meterRegistry.counter("audit.log.dropped");
+    this.spilled = meterRegistry.counter("audit.log.spilled");
+    this.renderFailed = meterRegistry.counter(LogXmlWriter.RENDER_FAILED);
+    this.deadLettered = meterRegistry.counter("audit.log.dead.lettered");
+    this.batchTimer = meterRegistry.timer("audit.log.batch");
+    meterRegistry.gauge("audit.log.queue.depth", size);
+    meterRegistry.gauge("audit.log.lag.ms", this, AuditLogWriter::lagMs);
+    this.writer = new Thread(this::run, "audit-log-writer");
+    this.writer.setDaemon(true);
+    this.journal =
+        sink == Sink.JOURNAL
+            ? new LogJournal(
+                Paths.get(journalDirectory),
+                segmentSize,
+                batchSize,
+                journalMaxAttempts,
+                this::index)
+            : null;
+    if (journal != null) {
+      meterRegistry.gauge("audit.log.journal.lag", journal, LogJournal::lag);
+      meterRegistry.gauge("audit.log.journal.quarantined", journal, LogJournal::quarantined);
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    if (journal != null) {
+      journal.start();
+    } else {
+      writer.start();
+    }
+  }
+
+  public void beginRequest() {
+    requestLogs.set(new ArrayList<>());
+  }
+
+  public void endRequest() {
+    List<Logger> logs = requestLogs.get();
+    requestLogs.remove();
+    if (logs != null && !logs.isEmpty()) {
+      writeAll(logs);
+    }
+  }
+
+  public Logger write(Logger log) {
+    List<Logger> logs = requestLogs.get();
+    if (logs != null) {
+      logs.add(log);
+      return log;
+    }
+    return writeNow(log);
+  }
+
+  private Logger writeNow(Logger log) {
+    if (journal != null) {
+      journal.append(log);
+      return log;
+    }
+    if (size.incrementAndGet() <= capacity) {
+      enqueue(log);
+      return log;
+    }
+    size.decrementAndGet();
+    switch (overflow) {
+      case SPILL:
+        spill(log);
+        return log;
+      case DROP_DEBUG:
+        if (log.getLogType() == Enums.LogType.DebugType) {
+          dropped.increment();
+          return log;
+        }
+        // Everything else blocks
+      default:
+        while (size.incrementAndGet() > capacity) {
+          size.decrementAndGet();
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        enqueue(log);
+        return log;
+    }
+  }
+
+  /**
+   * Blocks until everything queued before the call has been written, including logs that were
+   * spilled to disk on the way, or until flush-timeout-ms has passed.
+   */
+  public void flush() {
+    List<Logger> logs = requestLogs.get();
+    if (logs != null && !logs.isEmpty()) {
+      writeAll(new ArrayList<>(logs));
+      logs.clear();
+    }
+    if (journal != null) {
+      journal.flush(flushTimeoutMs);
+      return;
+    }
+    long deadline = System.currentTimeMillis() + flushTimeoutMs;
+    long target = enqueued.get();
+    while (writer.isAlive() && System.currentTimeMillis() < deadline) {
+      if (Files.exists(spillFile) || Files.exists(drainingFile)) {
+        // Spilled logs come back into the queue with new sequence numbers, take the target after
+        target = -1;
+      } else if (target < 0) {
+        target = enqueued.get();
+      } else if (written.get() >= target) {
+        return;
+      }
+      wake();
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+
+  private void writeAll(List<Logger> logs) {
+    if (journal != null) {
+      journal.appendAll(logs);
+      return;
+    }
+    if (size.addAndGet(logs.size()) <= capacity) {
+      queue.addAll(logs);
+      enqueued.addAndGet(logs.size());
+      wake();
+      return;
+    }
+    // Not enough room for the whole batch, let the overflow policy handle each log
+    size.addAndGet(-logs.size());
+    for (Logger log : logs) {
+      writeNow(log);
+    }
+  }
+
+  private void enqueue(Logger log) {
+    queue.offer(log);
+    enqueued.incrementAndGet();
+    wake();
+  }
+
+  private void wake() {
+    if (idle) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    if (journal != null) {
+      journal.shutdown();
+      return;
+    }
+    running = false;
+    LockSupport.unpark(writer);
+    writer.join(TimeUnit.SECONDS.toMillis(30));
+  }
+
+  private void run() {
+    List<Logger> batch = new ArrayList<>(batchSize);
+    long firstQueued = 0;
+    while (running || size.get() > 0) {
+      Logger log = queue.poll();
+      if (log != null) {
+        if (batch.isEmpty()) {
+          firstQueued = System.currentTimeMillis();
+        }
+        batch.add(log);
+        if (batch.size() < batchSize) {
+          continue;
+        }
+      }
+      if (!batch.isEmpty()
+          && (batch.size() >= batchSize
+              || System.currentTimeMillis() - firstQueued >= maxWaitMs
+              || !running)) {
+        insert(batch);
+        batch = new ArrayList<>(batchSize);
+      } else if (log == null) {
+        if (batch.isEmpty() && spillWaiting) {
+          readSpill();
+        }
+        // Sleep until a producer wakes us, or until the open batch is due
+        long waitNanos =
+            batch.isEmpty()
+                ? IDLE_NANOS
+                : TimeUnit.MILLISECONDS.toNanos(
+                    maxWaitMs - (System.currentTimeMillis() - firstQueued));
+        idle = true;
+        if (running && queue.isEmpty() && waitNanos > 0) {
+          LockSupport.parkNanos(waitNanos);
+        }
+        idle = false;
+      }
+    }
+    if (!batch.isEmpty()) {
+      insert(batch);
+    }
+  }
+
+  private void insert(List<Logger> batch) {
+    // Ids are set before the first attempt, so spilled logs that did land are skipped on replay
+    batch.forEach(
+        log -> {
+          if (log.getId() == null) {
+            log.setId(new ObjectId().toHexString());
+          }
+        });
+    if (System.currentTimeMillis() < retryAt) {
+      // Mongo was unreachable a moment ago, keep the logs on disk until the backoff is over
+      batch.forEach(this::spill);
+    } else {
+      try {
+        index(batch);
+        retries = 0;
+      } catch (RuntimeException e) {
+        if (LogJournal.isUnreachable(e)) {
+          // Keep the logs rather than lose them if mongo is unavailable
+          backOff();
+          batch.forEach(this::spill);
+        } else {
+          insertEach(batch);
+        }
+      }
+    }
+    size.addAndGet(-batch.size());
+    written.addAndGet(batch.size());
+  }
+
+  // The batch was rejected for its data, logs that are rejected on their own are dead lettered
+  private void insertEach(List<Logger> batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      try {
+        index(List.of(batch.get(i)));
+      } catch (RuntimeException e) {
+        if (LogJournal.isUnreachable(e)) {
+          backOff();
+          batch.subList(i, batch.size()).forEach(this::spill);
+          return;
+        }
+        deadLetter(batch.get(i));
+      }
+    }
+    retries = 0;
+  }
+
+  private void backOff() {
+    long backoff = Math.min(RETRY_MS << Math.min(retries++, 5), MAX_RETRY_MS);
+    retryAt = System.currentTimeMillis() + backoff;
+  }
+
+  // Journal batches and spilled logs can be replayed, logs already in mongo are skipped
+  private void index(List<Logger> batch) {
+    batchTimer.record(
+        () -> {
+          // Render the dumplog fragment here, off the request path and only once per entry
+          batch.forEach(log -> log.setXml(LogXmlWriter.render(log, renderFailed)));
+          try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Logger.class)
+                .insert(batch)
+                .execute();
+          } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+              throw e;
+            }
+          }
+        });
+  }
+
+  private void spill(Logger log) {
+    spillLock.lock();
+    try {
+      if (append(spillFile, log)) {
+        spilled.increment();
+        spillWaiting = true;
+      } else {
+        dropped.increment();
+      }
+    } finally {
+      spillLock.unlock();
+    }
+  }
+
+  private void deadLetter(Logger log) {
+    if (append(deadLetterFile, log)) {
+      deadLettered.increment();
+    } else {
+      dropped.increment();
+    }
+  }
+
+  private boolean append(Path file, Logger log) {
+    try (BufferedWriter out =
+        Files.newBufferedWriter(
+            file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      out.write(objectMapper.writeValueAsString(log));
+      out.newLine();
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Move spilled logs back into the queue once it is empty, no more than it has room for, the rest
+   * of the file is read on the next idle pass. Nothing is read while mongo is being backed off. A
+   * draining file left by a failed read is finished before the spill file is taken, so it is never
+   * overwritten. Lines that do not parse are counted as dropped and skipped.
+   */
+  private void readSpill() {
+    if (System.currentTimeMillis() < retryAt) {
+      return;
+    }
+    spillLock.lock();
+    try {
+      spillWaiting = false;
+      if (!Files.exists(drainingFile)) {
+        if (!Files.exists(spillFile)) {
+          return;
+        }
+        Files.move(spillFile, drainingFile, StandardCopyOption.ATOMIC_MOVE);
+        drained = 0;
+      }
+    } catch (IOException e) {
+      spillWaiting = true;
+      return;
+    } finally {
+      spillLock.unlock();
+    }
+    try (BufferedReader in = Files.newBufferedReader(drainingFile, StandardCharsets.UTF_8)) {
+      String line;
+      long lines = 0;
+      while ((line = in.readLine()) != null) {
+        if (lines < drained) {
+          lines++;
+          continue;
+        }
+        if (size.incrementAndGet() > capacity) {
+          size.decrementAndGet();
+          drained = lines;
+          spillWaiting = true;
+          return;
+        }
+        lines++;
+        Logger log;
+        try {
+          log = objectMapper.readValue(line, Logger.class);
+        } catch (IOException e) {
+          size.decrementAndGet();
+          dropped.increment();
+          continue;
+        }
+        enqueue(log);
+      }
+      Files.delete(drainingFile);
+      drained = 0;
+    } catch (IOException e) {
+      // Read again on the next pass, logs already queued from it are skipped as duplicates then
+      spillWaiting = true;
+    }
+  }
+
+  private double lagMs() {
+    Logger head = queue.peek();
+    if (head == null || head.getTimestamp() == null) {
+      return 0;
+    }
+    return Instant.now().toEpochMilli() - head.getTimestamp().toEpochMilli();
+  }
+}
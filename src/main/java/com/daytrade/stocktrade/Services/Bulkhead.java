@@ -0,0 +1,64 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Exceptions.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how much of one kind of work runs at once. Callers over the limit wait up to maxWaitMs
+ * for a slot and are turned away after that, so a slow downstream holds at most limit threads.
+ */
+public class Bulkhead {
+
+  private final String name;
+  private final Semaphore permits;
+  private final long maxWaitMs;
+  private final long retryAfterSeconds;
+  private final Counter rejected;
+
+  public Bulkhead(
+      String name, int limit, long maxWaitMs, long retryAfterSeconds, MeterRegistry registry) {
+    this.name = name;
+    this.permits = new Semaphore(limit, true);
+    this.maxWaitMs = maxWaitMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.rejected = registry.counter("bulkhead.rejected", "bulkhead", name);
+    Gauge.builder("bulkhead.available", permits, Semaphore::availablePermits)
+        .tag("bulkhead", name)
+        .register(registry);
+  }
+
+  // False when no slot freed up in time, the caller must not release then
+  public boolean tryAcquire() {
+    try {
+      if (permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    rejected.increment();
+    return false;
+  }
+
+  public void acquire() {
+    if (!tryAcquire()) {
+      throw new ServiceBusyException(name, retryAfterSeconds);
+    }
+  }
+
+  public void release() {
+    permits.release();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
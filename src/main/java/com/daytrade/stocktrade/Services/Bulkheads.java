@@ -0,0 +1,59 @@
+package com.daytrade.stocktrade.Services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Separate limits for work that waits on the quote server, plain mongo requests, log dumps and
+ * logins. Together they stay below server.tomcat.threads.max, so a slow quote server, a dump or a
+ * login storm can not take every thread and cheap requests still get served.
+ */
+@Service
+public class Bulkheads {
+
+  private final Bulkhead quote;
+  private final Bulkhead mongo;
+  private final Bulkhead dump;
+  private final Bulkhead login;
+
+  @Autowired
+  public Bulkheads(
+      MeterRegistry meterRegistry,
+      @Value("${bulkhead.retry-after-seconds:1}") long retryAfterSeconds,
+      @Value("${bulkhead.quote.limit:50}") int quoteLimit,
+      @Value("${bulkhead.quote.max-wait-ms:200}") long quoteMaxWaitMs,
+      @Value("${bulkhead.mongo.limit:120}") int mongoLimit,
+      @Value("${bulkhead.mongo.max-wait-ms:500}") long mongoMaxWaitMs,
+      @Value("${bulkhead.dump.limit:2}") int dumpLimit,
+      @Value("${bulkhead.dump.max-wait-ms:0}") long dumpMaxWaitMs,
+      @Value("${bulkhead.login.limit:16}") int loginLimit,
+      @Value("${bulkhead.login.max-wait-ms:0}") long loginMaxWaitMs) {
+    this.quote =
+        new Bulkhead("quote", quoteLimit, quoteMaxWaitMs, retryAfterSeconds, meterRegistry);
+    this.mongo =
+        new Bulkhead("mongo", mongoLimit, mongoMaxWaitMs, retryAfterSeconds, meterRegistry);
+    this.dump = new Bulkhead("dump", dumpLimit, dumpMaxWaitMs, retryAfterSeconds, meterRegistry);
+    this.login =
+        new Bulkhead("login", loginLimit, loginMaxWaitMs, retryAfterSeconds, meterRegistry);
+  }
+
+  // Requests and jobs that may have to ask the quote server
+  public Bulkhead quote() {
+    return quote;
+  }
+
+  public Bulkhead mongo() {
+    return mongo;
+  }
+
+  public Bulkhead dump() {
+    return dump;
+  }
+
+  // Logins and sign ups, both spend their time in BCrypt
+  public Bulkhead login() {
+    return login;
+  }
+}
@@ -0,0 +1,286 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Logger;
+import com.daytrade.stocktrade.Repositories.LoggerRepository;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Writes dumplogs, optionally gzip or zstd compressed. With more than one segment configured the
+ * timestamp range of the dump is split into segments that are read and compressed in parallel into
+ * temp files, which are then copied to the response in timestamp order. Gzip members and zstd
+ * frames can be concatenated, so every segment is compressed on its own.
+ *
+ * <p>Days that were rolled over into the log archive are read from there before the logs still in
+ * mongo, each archive file is its own segment.
+ *
+ * <p>In merge mode every server's logs are read through their own timestamp sorted cursor and
+ * merged as they stream. Partitions are the serverName values of the shared collection, or the log
+ * collection of every node listed in dumplog.nodes when nodes keep their logs locally.
+ */
+@Service
+public class DumpLogExporter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final LoggerRepository loggerRepository;
+  private final MongoTemplate mongoTemplate;
+  private final LogArchiver logArchiver;
+  private final ExecutorService executor;
+  private final int segments;
+  private final boolean merge;
+  private final List<SimpleMongoClientDatabaseFactory> nodes = new ArrayList<>();
+
+  @Autowired
+  public DumpLogExporter(
+      LoggerRepository loggerRepository,
+      MongoTemplate mongoTemplate,
+      LogArchiver logArchiver,
+      @Value("${dumplog.segments:1}") int segments,
+      @Value("${dumplog.threads:4}") int threads,
+      @Value("${dumplog.merge:false}") boolean merge,
+      @Value("${dumplog.nodes:}") String[] nodes) {
+    this.loggerRepository = loggerRepository;
+    this.mongoTemplate = mongoTemplate;
+    this.logArchiver = logArchiver;
+    this.segments = segments;
+    this.merge = merge;
+    for (String node : nodes) {
+      if (!node.isBlank()) {
+        this.nodes.add(new SimpleMongoClientDatabaseFactory(node));
+      }
+    }
+    this.executor =
+        Executors.newFixedThreadPool(
+            threads,
+            r -> {
+              Thread thread = new Thread(r, "dumplog-segment");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public void export(String username, Enums.Compression compression, OutputStream out)
+      throws IOException {
+    if (merge) {
+      exportMerged(username, compression, out);
+      return;
+    }
+    if (segments <= 1) {
+      exportSingle(username, compression, out);
+      return;
+    }
+    Optional<Logger> first =
+        username == null
+            ? loggerRepository.findFirstByOrderByTimestampAsc()
+            : loggerRepository.findFirstByUserNameOrderByTimestampAsc(username);
+    Optional<Logger> last =
+        username == null
+            ? loggerRepository.findFirstByOrderByTimestampDesc()
+            : loggerRepository.findFirstByUserNameOrderByTimestampDesc(username);
+    if (first.isEmpty() || last.isEmpty()) {
+      exportSingle(username, compression, out);
+      return;
+    }
+
+    List<Future<Path>> parts = new ArrayList<>();
+    for (String archive : logArchiver.archives()) {
+      LogSource logs = () -> logArchiver.read(archive, username);
+      parts.add(executor.submit(() -> writeSegment(logs, compression)));
+    }
+    long from = first.get().getTimestamp().toEpochMilli();
+    long to = last.get().getTimestamp().toEpochMilli() + 1;
+    long step = Math.max(1, (to - from + segments - 1) / segments);
+    for (long start = from; start < to; start += step) {
+      Instant segmentFrom = Instant.ofEpochMilli(start);
+      Instant segmentTo = Instant.ofEpochMilli(Math.min(start + step, to));
+      LogSource logs =
+          username == null
+              ? () -> loggerRepository.streamByTimestampRange(segmentFrom, segmentTo)
+              : () ->
+                  loggerRepository.streamByUserNameAndTimestampRange(
+                      username, segmentFrom, segmentTo);
+      parts.add(executor.submit(() -> writeSegment(logs, compression)));
+    }
+
+    try {
+      writeMember(out, compression, true);
+      // Segments are copied as soon as they are done, in order, while later ones still render
+      for (Future<Path> part : parts) {
+        Files.copy(part.get(), out);
+      }
+      writeMember(out, compression, false);
+      out.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      deleteSegments(parts);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+    nodes.forEach(SimpleMongoClientDatabaseFactory::destroy);
+  }
+
+  private void exportSingle(String username, Enums.Compression compression, OutputStream out)
+      throws IOException {
+    try (OutputStream compressed = compress(StreamUtils.nonClosing(out), compression);
+        Stream<Logger> logs =
+            username == null
+                ? loggerRepository.streamAllBy()
+                : loggerRepository.streamByUserName(username)) {
+      LogXmlWriter writer = new LogXmlWriter(compressed);
+      writer.writeStart();
+      writeArchives(writer, username);
+      writeLogs(writer, logs.iterator());
+      writer.writeEnd();
+    }
+    out.flush();
+  }
+
+  private void exportMerged(String username, Enums.Compression compression, OutputStream out)
+      throws IOException {
+    List<CloseableIterator<Logger>> cursors = new ArrayList<>();
+    try (OutputStream compressed = compress(StreamUtils.nonClosing(out), compression);
+        MergingLogIterator logs = new MergingLogIterator(cursors)) {
+      if (nodes.isEmpty()) {
+        List<String> servers =
+            mongoTemplate.findDistinct(
+                userQuery(username), "serverName", Logger.class, String.class);
+        for (String server : servers) {
+          Query byServer = userQuery(username).addCriteria(Criteria.where("serverName").is(server));
+          cursors.add(partition(mongoTemplate, byServer));
+        }
+      } else {
+        for (SimpleMongoClientDatabaseFactory node : nodes) {
+          cursors.add(partition(new MongoTemplate(node), userQuery(username)));
+        }
+      }
+      LogXmlWriter writer = new LogXmlWriter(compressed);
+      writer.writeStart();
+      writeArchives(writer, username);
+      writeLogs(writer, logs);
+      writer.writeEnd();
+    }
+    out.flush();
+  }
+
+  private Path writeSegment(LogSource source, Enums.Compression compression)
+      throws IOException {
+    Path file = Files.createTempFile("dumplog-", ".part");
+    try (OutputStream out =
+            compress(new BufferedOutputStream(Files.newOutputStream(file)), compression);
+        Stream<Logger> logs = source.open()) {
+      LogXmlWriter writer = new LogXmlWriter(out);
+      writeLogs(writer, logs.iterator());
+      writer.close();
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    return file;
+  }
+
+  private void writeArchives(LogXmlWriter writer, String username) throws IOException {
+    for (String archive : logArchiver.archives()) {
+      try (Stream<Logger> logs = logArchiver.read(archive, username)) {
+        writeLogs(writer, logs.iterator());
+      }
+    }
+  }
+
+  private void writeLogs(LogXmlWriter writer, Iterator<Logger> logs) throws IOException {
+    while (logs.hasNext()) {
+      writer.write(logs.next());
+    }
+  }
+
+  private static Query userQuery(String username) {
+    return username == null
+        ? new Query()
+        : Query.query(Criteria.where("userName").is(username));
+  }
+
+  // One timestamp sorted partition, every stored entry has its fragment since LogXmlBackfill
+  private static CloseableIterator<Logger> partition(MongoTemplate template, Query query) {
+    query.with(Sort.by("timestamp")).cursorBatchSize(LoggerRepository.CURSOR_BATCH_SIZE);
+    query.fields().include("xml").include("timestamp");
+    return template.stream(query, Logger.class);
+  }
+
+  // The root element start or end tag as its own compressed member
+  private static void writeMember(OutputStream out, Enums.Compression compression, boolean start)
+      throws IOException {
+    try (OutputStream member = compress(StreamUtils.nonClosing(out), compression)) {
+      LogXmlWriter writer = new LogXmlWriter(member);
+      if (start) {
+        writer.writeStart();
+      } else {
+        writer.writeEnd();
+      }
+    }
+  }
+
+  private static OutputStream compress(OutputStream out, Enums.Compression compression)
+      throws IOException {
+    switch (compression) {
+      case GZIP:
+        // Sync flush so the first bytes still go out before the whole dump is compressed
+        return new GZIPOutputStream(out, BUFFER_SIZE, true);
+      case ZSTD:
+        return new ZstdOutputStream(out);
+      default:
+        return out;
+    }
+  }
+
+  @FunctionalInterface
+  private interface LogSource {
+    Stream<Logger> open() throws IOException;
+  }
+
+  // Waits for every segment so none is left behind on disk, even when the dump failed
+  private static void deleteSegments(List<Future<Path>> parts) {
+    for (Future<Path> part : parts) {
+      try {
+        Files.deleteIfExists(part.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException | IOException e) {
+        // Failed segments clean up after themselves
+      }
+    }
+  }
+}
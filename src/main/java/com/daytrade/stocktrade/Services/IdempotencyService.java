@@ -0,0 +1,124 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Exceptions.ServiceBusyException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Stores the response of every successful command by user and transactionId so a retried request
+ * gets the original result back instead of running the command again. Responses are kept in a
+ * local cache for fast replays on the same node and in redis so retries that land on another node
+ * are caught as well. A key is claimed in redis before the command runs so concurrent retries of
+ * the same transactionId wait for the first one instead of running the command twice.
+ */
+@Service
+public class IdempotencyService {
+
+  // Stored under a key while its command runs, replaced by the response or removed on failure
+  private static final String IN_FLIGHT = "__in-flight__";
+  private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final Cache<String, Object> localResponses;
+  private final RMapCache<String, Object> responses;
+  // Tells every node to drop its local responses when the stored ones are cleared
+  private final RTopic clears;
+  private final long ttlSeconds;
+  private final long inFlightSeconds;
+  private final long waitMs;
+  private final RequestMetrics requestMetrics;
+
+  @Autowired
+  public IdempotencyService(
+      RedissonClient redissonClient,
+      RequestMetrics requestMetrics,
+      @Value("${idempotency.ttl-seconds:300}") long ttlSeconds,
+      @Value("${idempotency.max-size:100000}") int maxSize,
+      @Value("${idempotency.in-flight-seconds:60}") long inFlightSeconds,
+      @Value("${idempotency.wait-ms:5000}") long waitMs) {
+    this.ttlSeconds = ttlSeconds;
+    this.inFlightSeconds = inFlightSeconds;
+    this.waitMs = waitMs;
+    this.requestMetrics = requestMetrics;
+    this.localResponses =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .build();
+    this.responses = redissonClient.getMapCache("idempotent-responses");
+    this.responses.setMaxSize(maxSize);
+    this.clears = redissonClient.getTopic("idempotent-responses-clear");
+    this.clears.addListener(String.class, (channel, from) -> localResponses.invalidateAll());
+  }
+
+  /**
+   * Run the handler unless the same user already ran this command with this transactionId. Failed
+   * commands are not stored so they can be retried. A retry that arrives while the first attempt is
+   * still running waits for its response, and gets a 503 if it does not arrive within wait-ms.
+   */
+  @SuppressWarnings("unchecked")
+  public <T, E extends Exception> T execute(
+      String user, String transactionId, Enums.CommandType commandType, Handler<T, E> handler)
+      throws E {
+    requestMetrics.command(commandType);
+    if (transactionId == null) {
+      return handler.handle();
+    }
+    String key = user + ":" + transactionId + ":" + commandType.name();
+    Object stored = localResponses.getIfPresent(key);
+    if (stored != null) {
+      return (T) stored;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+    while (true) {
+      stored = responses.putIfAbsent(key, IN_FLIGHT, inFlightSeconds, TimeUnit.SECONDS);
+      if (stored == null) {
+        return run(key, handler);
+      }
+      if (!IN_FLIGHT.equals(stored)) {
+        return (T) stored;
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        throw new ServiceBusyException("retried", 1);
+      }
+      LockSupport.parkNanos(POLL_NANOS);
+    }
+  }
+
+  // Forget every stored response on all nodes, used when the database is dumped between runs
+  public void clear() {
+    responses.clear();
+    localResponses.invalidateAll();
+    clears.publish("clear");
+  }
+
+  private <T, E extends Exception> T run(String key, Handler<T, E> handler) throws E {
+    T result;
+    try {
+      result = handler.handle();
+    } catch (Exception | Error e) {
+      responses.fastRemove(key);
+      throw e;
+    }
+    if (result == null) {
+      responses.fastRemove(key);
+    } else {
+      localResponses.put(key, result);
+      responses.fastPut(key, result, ttlSeconds, TimeUnit.SECONDS);
+    }
+    return result;
+  }
+
+  @FunctionalInterface
+  public interface Handler<T, E extends Exception> {
+    T handle() throws E;
+  }
+}
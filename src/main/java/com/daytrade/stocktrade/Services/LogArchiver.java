@@ -0,0 +1,180 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Logger;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.bson.Document;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the logs collection down to the most recent days so its indexes stay in memory. A daily
+ * rollover moves every older UTC day out of the logs collection into a gzipped file of json lines,
+ * one file per day, which dumplog reads before the logs still in the collection. The files are
+ * kept in a GridFS bucket of the same database, so every node sees the same archive.
+ */
+@Service
+public class LogArchiver {
+
+  private static final String PREFIX = "logs-";
+  private static final String SUFFIX = ".jsonl.gz";
+  // Archived logs are removed from the collection in batches of this many ids
+  private static final int DELETE_BATCH = 1000;
+
+  private final MongoTemplate mongoTemplate;
+  private final ScheduledJobs scheduledJobs;
+  private final RLock lock;
+  private final GridFSBucket bucket;
+  private final int hotDays;
+
+  @Autowired
+  public LogArchiver(
+      MongoTemplate mongoTemplate,
+      ScheduledJobs scheduledJobs,
+      RedissonClient redissonClient,
+      @Value("${log-archive.bucket:log_archive}") String bucket,
+      @Value("${log-archive.hot-days:2}") int hotDays) {
+    this.mongoTemplate = mongoTemplate;
+    this.scheduledJobs = scheduledJobs;
+    this.lock = redissonClient.getLock("log-archive-lock");
+    this.bucket = GridFSBuckets.create(mongoTemplate.getDb(), bucket);
+    this.hotDays = hotDays;
+  }
+
+  @Scheduled(cron = "${log-archive.cron:0 5 0 * * *}", zone = "UTC")
+  public void scheduleRollover() {
+    scheduledJobs.run("log-archive", this::rollover);
+  }
+
+  // Only one node rolls over, the others skip the run
+  public void rollover() throws IOException {
+    if (!lock.tryLock()) {
+      return;
+    }
+    try {
+      Instant cutoff = Instant.now().truncatedTo(ChronoUnit.DAYS).minus(hotDays, ChronoUnit.DAYS);
+      Query oldest = new Query().with(Sort.by("timestamp")).limit(1);
+      Logger first = mongoTemplate.findOne(oldest, Logger.class);
+      if (first == null) {
+        return;
+      }
+      Instant day = first.getTimestamp().truncatedTo(ChronoUnit.DAYS);
+      for (; day.isBefore(cutoff); day = day.plus(1, ChronoUnit.DAYS)) {
+        archive(day);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Names of the archived days in order, oldest first
+  public List<String> archives() {
+    List<String> names = new ArrayList<>();
+    bucket.find().sort(Sorts.ascending("filename")).forEach(file -> names.add(file.getFilename()));
+    return names;
+  }
+
+  // Logs of an archive file, only the given user's when username is not null
+  public Stream<Logger> read(String archive, String username) throws IOException {
+    BufferedReader in =
+        new BufferedReader(
+            new InputStreamReader(
+                new GZIPInputStream(bucket.openDownloadStream(archive)), StandardCharsets.UTF_8));
+    return in.lines()
+        .map(line -> mongoTemplate.getConverter().read(Logger.class, Document.parse(line)))
+        .filter(log -> username == null || username.equals(log.getUserName()))
+        .onClose(
+            () -> {
+              try {
+                in.close();
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+  }
+
+  public void deleteAll() {
+    bucket.drop();
+  }
+
+  private void archive(Instant day) throws IOException {
+    Criteria inDay = Criteria.where("timestamp").gte(day).lt(day.plus(1, ChronoUnit.DAYS));
+    // Logs that arrive late for a day that was already archived get a file of their own
+    String name = PREFIX + LocalDate.ofInstant(day, ZoneOffset.UTC);
+    if (bucket.find(Filters.eq("filename", name + SUFFIX)).first() != null) {
+      name = name + "_" + Instant.now().toEpochMilli();
+    }
+    name = name + SUFFIX;
+
+    String collection = mongoTemplate.getCollectionName(Logger.class);
+    if (!mongoTemplate.exists(new Query(inDay), collection)) {
+      return;
+    }
+    Query query = new Query(inDay).with(Sort.by("timestamp"));
+    GridFSUploadStream upload = bucket.openUploadStream(name);
+    Writer out =
+        new BufferedWriter(
+            new OutputStreamWriter(new GZIPOutputStream(upload), StandardCharsets.UTF_8));
+    try (CloseableIterator<Document> logs =
+        mongoTemplate.stream(query, Document.class, collection)) {
+      while (logs.hasNext()) {
+        out.write(logs.next().toJson());
+        out.write('\n');
+      }
+      // Writes the gzip trailer and the last chunk, the file is only complete when this succeeds
+      out.close();
+    } catch (IOException | RuntimeException e) {
+      // The file only becomes visible once the upload is closed, drop the chunks written so far
+      try {
+        upload.abort();
+      } catch (RuntimeException abort) {
+        // Already closed when the close itself failed, keep the original failure
+        e.addSuppressed(abort);
+      }
+      throw e;
+    }
+    // The file is complete before anything is removed from mongo. Only the logs that were written
+    // to it are removed, logs replayed into the day while it was being read stay for the next run.
+    try (Stream<Logger> archived = read(name, null)) {
+      Iterator<Logger> logs = archived.iterator();
+      List<String> ids = new ArrayList<>(DELETE_BATCH);
+      while (logs.hasNext()) {
+        ids.add(logs.next().getId());
+        if (ids.size() == DELETE_BATCH || !logs.hasNext()) {
+          mongoTemplate.remove(Query.query(Criteria.where("id").in(ids)), Logger.class);
+          ids.clear();
+        }
+      }
+    }
+  }
+}
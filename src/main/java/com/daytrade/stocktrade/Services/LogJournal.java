@@ -0,0 +1,503 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Logger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * Append only journal of audit logs in memory mapped segment files. Appending a log is a memory
+ * copy, a background thread reads the journal back and hands batches to the indexer, then records
+ * how far it got in the segment header. Segments are deleted once they are full and indexed.
+ *
+ * <p>Segment layout: a header of magic, version and indexed position, followed by records of
+ * payload length, crc32 of the payload and the payload. After a crash every segment left on disk is
+ * read up to its first record that is missing or fails its crc, from the indexed position on, and
+ * new logs go to a fresh segment.
+ *
+ * <p>A batch that fails is retried with a growing backoff. Failures that mean mongo is unreachable
+ * are retried for as long as it takes. A batch that keeps failing for any other reason is indexed
+ * record by record after max attempts, and the records that still fail, or that do not decode, are
+ * copied to the quarantine file in the journal directory, in the segment record layout, and
+ * skipped.
+ */
+public class LogJournal {
+
+  private static final int MAGIC = 0x4c4f474a;
+  private static final int VERSION = 1;
+  private static final int INDEXED_OFFSET = 8;
+  private static final int HEADER_SIZE = 16;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final String SUFFIX = ".journal";
+  private static final String QUARANTINE = "quarantine.records";
+  private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  private final Path directory;
+  private final int segmentSize;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final Consumer<List<Logger>> indexer;
+  private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private final AtomicLong appended = new AtomicLong();
+  // Records indexed or quarantined
+  private final AtomicLong indexed = new AtomicLong();
+  private final AtomicLong quarantined = new AtomicLong();
+  private final Thread reader;
+  // Not a monitor, rolling a segment does file io that would pin a virtual thread
+  private final ReentrantLock lock = new ReentrantLock();
+  private Segment current;
+  private volatile boolean running = true;
+  // Reader thread only, consecutive failed attempts and the ones not caused by mongo being away
+  private int retries;
+  private int failures;
+
+  public LogJournal(
+      Path directory,
+      int segmentSize,
+      int batchSize,
+      int maxAttempts,
+      Consumer<List<Logger>> indexer)
+      throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.indexer = indexer;
+    Files.createDirectories(directory);
+    recover();
+    long next = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+    this.current = Segment.create(directory.resolve(name(next)), next, segmentSize);
+    segments.put(next, current);
+    this.reader = new Thread(this::run, "audit-log-indexer");
+    this.reader.setDaemon(true);
+  }
+
+  public void start() {
+    reader.start();
+  }
+
+  public void append(Logger log) {
+    appendAll(List.of(log));
+  }
+
+  // Appends the logs next to each other under a single lock
+  public void appendAll(List<Logger> logs) {
+    List<byte[]> records = new ArrayList<>(logs.size());
+    for (Logger log : logs) {
+      if (log.getId() == null) {
+        // Assigned here so replaying a segment after a crash can skip logs already in mongo
+        log.setId(new ObjectId().toHexString());
+      }
+      byte[] payload = encode(log);
+      if (HEADER_SIZE + RECORD_HEADER_SIZE + payload.length > segmentSize) {
+        throw new IllegalArgumentException("Log record larger than a journal segment");
+      }
+      records.add(payload);
+    }
+    lock.lock();
+    try {
+      for (byte[] payload : records) {
+        int size = RECORD_HEADER_SIZE + payload.length;
+        if (current.limit + size > segmentSize) {
+          roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = current.buffer.duplicate();
+        buffer.position(current.limit);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        // Publishes the record to the reader
+        current.limit += size;
+      }
+      appended.addAndGet(records.size());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Blocks until everything appended before the call has been indexed, or the timeout has passed
+  public void flush(long timeoutMs) {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    long target = appended.get();
+    while (indexed.get() < target && reader.isAlive() && System.currentTimeMillis() < deadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+
+  public long lag() {
+    return appended.get() - indexed.get();
+  }
+
+  public long quarantined() {
+    return quarantined.get();
+  }
+
+  public void shutdown() throws InterruptedException {
+    running = false;
+    reader.join(TimeUnit.SECONDS.toMillis(30));
+    lock.lock();
+    try {
+      for (Segment segment : segments.values()) {
+        segment.buffer.force();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void roll() {
+    current.buffer.force();
+    long next = current.index + 1;
+    try {
+      Segment segment = Segment.create(directory.resolve(name(next)), next, segmentSize);
+      segments.put(next, segment);
+      current.sealed = true;
+      current = segment;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void run() {
+    List<Logger> batch = new ArrayList<>(batchSize);
+    List<byte[]> records = new ArrayList<>(batchSize);
+    while (running || lag() > 0) {
+      Map.Entry<Long, Segment> first = segments.firstEntry();
+      Segment segment = first.getValue();
+      // Read sealed before limit, a sealed segment gets no more records
+      boolean sealed = segment.sealed;
+      int limit = segment.limit;
+      int position = segment.indexedPosition;
+      ByteBuffer buffer = segment.buffer.duplicate();
+      boolean stalled = false;
+      while (position < limit && batch.size() < batchSize) {
+        buffer.position(position);
+        int length = buffer.getInt();
+        buffer.getInt();
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        Logger log;
+        try {
+          log = decode(payload);
+        } catch (RuntimeException e) {
+          if (!batch.isEmpty()) {
+            // Set aside once the batch ahead of it is done, so it is never quarantined twice
+            break;
+          }
+          if (!quarantine(payload)) {
+            stalled = true;
+            break;
+          }
+          position += RECORD_HEADER_SIZE + length;
+          segment.checkpoint(position);
+          indexed.incrementAndGet();
+          continue;
+        }
+        batch.add(log);
+        records.add(payload);
+        position += RECORD_HEADER_SIZE + length;
+      }
+      if (!batch.isEmpty() || stalled) {
+        if (stalled || !index(batch, records)) {
+          // The records stay in the journal, try the same batch again
+          batch.clear();
+          records.clear();
+          if (!running) {
+            // Left for the next start
+            return;
+          }
+          LockSupport.parkNanos(
+              Math.min(RETRY_NANOS << Math.min(retries++, 5), MAX_RETRY_NANOS));
+          continue;
+        }
+        retries = 0;
+        indexed.addAndGet(batch.size());
+        segment.checkpoint(position);
+        batch = new ArrayList<>(batchSize);
+        records = new ArrayList<>(batchSize);
+      } else if (sealed) {
+        segments.remove(first.getKey());
+        segment.delete();
+      } else {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+      }
+    }
+  }
+
+  // False when the batch has to be tried again
+  private boolean index(List<Logger> batch, List<byte[]> records) {
+    try {
+      indexer.accept(batch);
+      failures = 0;
+      return true;
+    } catch (RuntimeException e) {
+      if (!isUnreachable(e) && ++failures >= maxAttempts) {
+        return indexEach(batch, records);
+      }
+      return false;
+    }
+  }
+
+  // Finds the records the batch keeps failing on, the others are indexed
+  private boolean indexEach(List<Logger> batch, List<byte[]> records) {
+    for (int i = 0; i < batch.size(); i++) {
+      try {
+        indexer.accept(List.of(batch.get(i)));
+      } catch (RuntimeException e) {
+        // Records already indexed from this batch are skipped as duplicates on the next try
+        if (isUnreachable(e) || !quarantine(records.get(i))) {
+          return false;
+        }
+      }
+    }
+    failures = 0;
+    return true;
+  }
+
+  // Failures that mean mongo could not be reached, retrying later can succeed
+  static boolean isUnreachable(RuntimeException e) {
+    return e instanceof DataAccessResourceFailureException
+        || e instanceof TransientDataAccessException;
+  }
+
+  // Appends the record to the quarantine file, false if it could not be written
+  private boolean quarantine(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+    record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+    try (FileChannel channel =
+        FileChannel.open(
+            directory.resolve(QUARANTINE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND)) {
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      return false;
+    }
+    quarantined.incrementAndGet();
+    return true;
+  }
+
+  // Segments left by the last run, read up to the last complete record and sealed
+  private void recover() throws IOException {
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files =
+          list.filter(f -> f.getFileName().toString().endsWith(SUFFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      long index = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+      Segment segment = Segment.open(file, index);
+      if (segment == null) {
+        Files.delete(file);
+        continue;
+      }
+      segment.sealed = true;
+      segments.put(index, segment);
+      appended.addAndGet(segment.unindexed);
+    }
+  }
+
+  private static String name(long index) {
+    return String.format("%020d%s", index, SUFFIX);
+  }
+
+  private static byte[] encode(Logger log) {
+    // Fixed size fields first, then every string as a length and utf-8 bytes, -1 for null
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    buffer.put(new ObjectId(log.getId()).toByteArray());
+    buffer.putLong(log.getTimestamp().toEpochMilli());
+    buffer.put((byte) log.getLogType().ordinal());
+    buffer.put(log.getCommandType() == null ? -1 : (byte) log.getCommandType().ordinal());
+    buffer.putDouble(log.getFunds() == null ? Double.NaN : log.getFunds());
+    buffer.putDouble(log.getUnitPrice() == null ? Double.NaN : log.getUnitPrice());
+    buffer.putLong(
+        log.getQuoteServerTime() == null
+            ? Long.MIN_VALUE
+            : log.getQuoteServerTime().toEpochMilli());
+    for (String value :
+        new String[] {
+          log.getServerName(),
+          log.getTransactionNumber(),
+          log.getUserName(),
+          log.getStockSymbol(),
+          log.getFileName(),
+          log.getCryptoKey(),
+          log.getAction(),
+          log.getMessage()
+        }) {
+      byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+      buffer = ensure(buffer, 4 + (bytes == null ? 0 : bytes.length));
+      buffer.putInt(bytes == null ? -1 : bytes.length);
+      if (bytes != null) {
+        buffer.put(bytes);
+      }
+    }
+    byte[] payload = new byte[buffer.position()];
+    buffer.flip().get(payload);
+    return payload;
+  }
+
+  private static ByteBuffer ensure(ByteBuffer buffer, int needed) {
+    if (buffer.remaining() >= needed) {
+      return buffer;
+    }
+    int capacity = Math.max(buffer.capacity() * 2, buffer.position() + needed);
+    ByteBuffer larger = ByteBuffer.allocate(capacity);
+    buffer.flip();
+    return larger.put(buffer);
+  }
+
+  private static Logger decode(byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload);
+    byte[] id = new byte[12];
+    buffer.get(id);
+    Logger log = new Logger();
+    log.setId(new ObjectId(id).toHexString());
+    log.setTimestamp(Instant.ofEpochMilli(buffer.getLong()));
+    log.setLogType(Enums.LogType.values()[buffer.get()]);
+    byte commandType = buffer.get();
+    log.setCommandType(commandType < 0 ? null : Enums.CommandType.values()[commandType]);
+    double funds = buffer.getDouble();
+    log.setFunds(Double.isNaN(funds) ? null : funds);
+    double unitPrice = buffer.getDouble();
+    log.setUnitPrice(Double.isNaN(unitPrice) ? null : unitPrice);
+    long quoteServerTime = buffer.getLong();
+    log.setQuoteServerTime(
+        quoteServerTime == Long.MIN_VALUE ? null : Instant.ofEpochMilli(quoteServerTime));
+    log.setServerName(readString(buffer));
+    log.setTransactionNumber(readString(buffer));
+    log.setUserName(readString(buffer));
+    log.setStockSymbol(readString(buffer));
+    log.setFileName(readString(buffer));
+    log.setCryptoKey(readString(buffer));
+    log.setAction(readString(buffer));
+    log.setMessage(readString(buffer));
+    return log;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static class Segment {
+    private final long index;
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private volatile int limit;
+    private volatile boolean sealed;
+    private int indexedPosition;
+    private long unindexed;
+
+    private Segment(long index, Path file, MappedByteBuffer buffer, int limit) {
+      this.index = index;
+      this.file = file;
+      this.buffer = buffer;
+      this.limit = limit;
+    }
+
+    private static Segment create(Path file, long index, int size) throws IOException {
+      try (FileChannel channel =
+          FileChannel.open(
+              file,
+              StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(INDEXED_OFFSET, HEADER_SIZE);
+        buffer.force();
+        Segment segment = new Segment(index, file, buffer, HEADER_SIZE);
+        segment.indexedPosition = HEADER_SIZE;
+        return segment;
+      }
+    }
+
+    // Null when the file is not a journal segment
+    private static Segment open(Path file, long index) throws IOException {
+      try (FileChannel channel =
+          FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        if (channel.size() < HEADER_SIZE) {
+          return null;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+          return null;
+        }
+        int indexed = (int) buffer.getLong(INDEXED_OFFSET);
+        int position = indexed;
+        long records = 0;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+          int length = buffer.getInt(position);
+          if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            break;
+          }
+          byte[] payload = new byte[length];
+          buffer.duplicate().position(position + RECORD_HEADER_SIZE).get(payload);
+          CRC32 crc = new CRC32();
+          crc.update(payload);
+          if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            break;
+          }
+          position += RECORD_HEADER_SIZE + length;
+          records++;
+        }
+        Segment segment = new Segment(index, file, buffer, position);
+        segment.indexedPosition = indexed;
+        segment.unindexed = records;
+        return segment;
+      }
+    }
+
+    // Written after the indexer is done with a batch, a crash replays at most that batch
+    private void checkpoint(int position) {
+      indexedPosition = position;
+      buffer.putLong(INDEXED_OFFSET, position);
+    }
+
+    private void delete() {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // Left for the next recovery, which finds it fully indexed
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Logger;
+import com.daytrade.stocktrade.Repositories.LoggerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.annotation.PostConstruct;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+/**
+ * One time migration that renders the dumplog fragment of logs stored before fragments were kept
+ * with the entry, so dumps only ever read the fragment. Runs on startup before the node serves
+ * requests. One node renders at a time, the others wait for the lock and then find nothing left.
+ */
+@Service
+public class LogXmlBackfill {
+
+  private static final int BATCH = 1000;
+
+  private final MongoTemplate mongoTemplate;
+  private final RLock lock;
+  private final Counter renderFailed;
+
+  @Autowired
+  public LogXmlBackfill(
+      MongoTemplate mongoTemplate, RedissonClient redissonClient, MeterRegistry meterRegistry) {
+    this.mongoTemplate = mongoTemplate;
+    this.lock = redissonClient.getLock("log-xml-backfill-lock");
+    this.renderFailed = meterRegistry.counter(LogXmlWriter.RENDER_FAILED);
+  }
+
+  @PostConstruct
+  public void backfill() {
+    Query missing = Query.query(Criteria.where("xml").exists(false));
+    if (!mongoTemplate.exists(missing, Logger.class)) {
+      return;
+    }
+    lock.lock();
+    try {
+      missing.cursorBatchSize(LoggerRepository.CURSOR_BATCH_SIZE);
+      try (CloseableIterator<Logger> logs = mongoTemplate.stream(missing, Logger.class)) {
+        BulkOperations updates = null;
+        int pending = 0;
+        while (logs.hasNext()) {
+          Logger log = logs.next();
+          if (updates == null) {
+            updates = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Logger.class);
+          }
+          updates.updateOne(
+              Query.query(Criteria.where("id").is(log.getId())),
+              Update.update("xml", LogXmlWriter.render(log, renderFailed)));
+          if (++pending == BATCH || !logs.hasNext()) {
+            updates.execute();
+            updates = null;
+            pending = 0;
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Logger;
+import io.micrometer.core.instrument.Counter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Renders log entries as dumplog xml. Each entry is rendered to a fragment once when it is stored,
+ * a dump then only copies the stored fragments between the root element tags. Output is indented
+ * by two spaces like the old DOM transformer output.
+ */
+public class LogXmlWriter implements AutoCloseable {
+
+  // Entries stored as an errorEvent because they could not be rendered
+  public static final String RENDER_FAILED = "audit.log.render.failed";
+
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+  private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>";
+  private static final String FOOTER = "\n</log>\n";
+
+  private final Writer out;
+
+  public LogXmlWriter(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+  }
+
+  // Fragment for a single entry, throws if the entry cannot be rendered
+  public static String render(Logger log) {
+    StringWriter fragment = new StringWriter();
+    try {
+      XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(fragment);
+      new Renderer(writer).write(log);
+      writer.flush();
+      writer.close();
+      return fragment.toString();
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("Could not render log " + log.getId(), e);
+    }
+  }
+
+  /**
+   * Fragment for a single entry that is never null. An entry that cannot be rendered is stored as
+   * an errorEvent with the fields that identify it and counted, so the dump still shows the entry.
+   */
+  public static String render(Logger log, Counter failures) {
+    try {
+      return render(log);
+    } catch (RuntimeException e) {
+      failures.increment();
+      return renderError(log);
+    }
+  }
+
+  public void writeStart() throws IOException {
+    out.write(HEADER);
+    // Push the declaration and root element out before the first query returns
+    out.flush();
+  }
+
+  public void writeEnd() throws IOException {
+    out.write(FOOTER);
+    out.flush();
+  }
+
+  // Entries read back from an archive written before fragments were stored are rendered here
+  public void write(Logger log) throws IOException {
+    out.write(log.getXml() != null ? log.getXml() : render(log));
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.flush();
+  }
+
+  private static String renderError(Logger log) {
+    StringWriter fragment = new StringWriter();
+    try {
+      XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(fragment);
+      Renderer renderer = new Renderer(writer);
+      renderer.start("errorEvent");
+      if (log.getTimestamp() != null)
+        renderer.element("timestamp", Long.toString(log.getTimestamp().toEpochMilli()));
+      if (log.getServerName() != null) renderer.element("server", log.getServerName());
+      if (log.getTransactionNumber() != null)
+        renderer.element("transactionNum", log.getTransactionNumber());
+      if (log.getCommandType() != null) renderer.element("command", log.getCommandType().name());
+      if (log.getUserName() != null) renderer.element("username", log.getUserName());
+      renderer.element("errorMessage", "Logging Error - Could not render " + log.getLogType());
+      renderer.end();
+      writer.flush();
+      writer.close();
+      return fragment.toString();
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("Could not render log " + log.getId(), e);
+    }
+  }
+
+  private static class Renderer {
+    private final XMLStreamWriter writer;
+
+    private Renderer(XMLStreamWriter writer) {
+      this.writer = writer;
+    }
+
+    private void write(Logger log) throws XMLStreamException {
+      switch (log.getLogType()) {
+        case UserCommandType:
+          start("userCommand");
+          commonElements(log, true);
+          break;
+        case QuoteServerType:
+          start("quoteServer");
+          commonElements(log, false);
+          element("price", String.format("%.2f", log.getUnitPrice()));
+          element("username", log.getUserName());
+          element("stockSymbol", log.getStockSymbol());
+          element("quoteServerTime", Long.toString(log.getQuoteServerTime().toEpochMilli()));
+          element("cryptokey", log.getCryptoKey());
+          break;
+        case AccountTransactionType:
+          start("accountTransaction");
+          commonElements(log, false);
+          element("action", log.getAction());
+          element("username", log.getUserName());
+          element("funds", String.format("%.2f", log.getFunds()));
+          break;
+        case SystemEventType:
+          start("systemEvent");
+          commonElements(log, true);
+          break;
+        case ErrorEventType:
+          start("errorEvent");
+          commonElements(log, true);
+          if (log.getMessage() != null) element("errorMessage", log.getMessage());
+          break;
+        case DebugType:
+          start("debugEvent");
+          commonElements(log, true);
+          if (log.getMessage() != null) element("debugMessage", log.getMessage());
+          break;
+        default:
+          start("errorEvent");
+          commonElements(log, true);
+          if (log.getMessage() != null)
+            element("errorMessage", "Logging Error - Invalid Log Type");
+      }
+      end();
+    }
+
+    private void commonElements(Logger log, boolean semiCommon) throws XMLStreamException {
+      element("timestamp", Long.toString(log.getTimestamp().toEpochMilli()));
+      element("server", log.getServerName());
+      element("transactionNum", log.getTransactionNumber());
+      if (semiCommon) {
+        element("command", log.getCommandType().name());
+        if (log.getUserName() != null) element("username", log.getUserName());
+        if (log.getStockSymbol() != null) element("stockSymbol", log.getStockSymbol());
+        if (log.getFileName() != null) element("filename", log.getFileName());
+        if (log.getFunds() != null) element("funds", String.format("%.2f", log.getFunds()));
+      }
+    }
+
+    private void start(String name) throws XMLStreamException {
+      writer.writeCharacters("\n  ");
+      writer.writeStartElement(name);
+    }
+
+    private void end() throws XMLStreamException {
+      writer.writeCharacters("\n  ");
+      writer.writeEndElement();
+    }
+
+    private void element(String name, String value) throws XMLStreamException {
+      writer.writeCharacters("\n    ");
+      writer.writeStartElement(name);
+      writer.writeCharacters(value);
+      writer.writeEndElement();
+    }
+  }
+}
@@ -1,76 +1,138 @@
 package com.daytrade.stocktrade.Services;
 
 import com.daytrade.stocktrade.Models.Enums;
-import com.daytrade.stocktrade.Models.Exceptions.EntityMissingException;
+import com.daytrade.stocktrade.Models.Exceptions.BadRequestException;
+import com.daytrade.stocktrade.Models.LogPage;
+import com.daytrade.stocktrade.Models.LogQuery;
 import com.daytrade.stocktrade.Models.LogRequest;
 import com.daytrade.stocktrade.Models.Logger;
 import com.daytrade.stocktrade.Models.Transactions.Transaction;
-import com.daytrade.stocktrade.Repositories.LoggerRepository;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 @Service
 public class LoggerService {
-  private final LoggerRepository loggerRepository;
+  private static final int MAX_PAGE_SIZE = 10000;
+
+  private final MongoTemplate mongoTemplate;
+  private final AuditLogWriter auditLogWriter;
+  private final DumpLogExporter dumpLogExporter;
+  private final RequestMetrics requestMetrics;
+  private final Bulkheads bulkheads;
 
   private final String serverName;
 
   @Autowired
   public LoggerService(
-      LoggerRepository loggerRepository, @Value("${security.server-name}") String serverName) {
-    this.loggerRepository = loggerRepository;
+      MongoTemplate mongoTemplate,
+      AuditLogWriter auditLogWriter,
+      DumpLogExporter dumpLogExporter,
+      RequestMetrics requestMetrics,
+      Bulkheads bulkheads,
+      @Value("${security.server-name}") String serverName) {
+    this.mongoTemplate = mongoTemplate;
+    this.auditLogWriter = auditLogWriter;
+    this.dumpLogExporter = dumpLogExporter;
+    this.requestMetrics = requestMetrics;
+    this.bulkheads = bulkheads;
     this.serverName = serverName;
   }
 
-  public Page<Logger> getAllLogs(Pageable page) {
-    return loggerRepository.findAll(page);
-  }
+  /**
+   * One page of logs in (timestamp, id) order. Pages continue after the last entry of the previous
+   * page instead of skipping an offset, so every page costs the same no matter how deep it is.
+   */
+  public LogPage getLogs(String username, LogQuery request, int defaultSize) {
+    int size = request.getSize() == null ? defaultSize : request.getSize();
+    if (size < 1 || size > MAX_PAGE_SIZE) {
+      throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    Query query = new Query();
+    if (username != null) {
+      query.addCriteria(Criteria.where("userName").is(username));
+    }
+    if (request.getCommand() != null) {
+      query.addCriteria(Criteria.where("commandType").is(request.getCommand()));
+    }
+    if (request.getTransactionNumber() != null) {
+      query.addCriteria(Criteria.where("transactionNumber").is(request.getTransactionNumber()));
+    }
+    if (request.getFrom() != null || request.getTo() != null) {
+      Criteria timestamp = Criteria.where("timestamp");
+      if (request.getFrom() != null) {
+        timestamp.gte(request.getFrom());
+      }
+      if (request.getTo() != null) {
+        timestamp.lt(request.getTo());
+      }
+      query.addCriteria(timestamp);
+    }
+    if (request.getAfter() != null) {
+      query.addCriteria(afterToken(request.getAfter()));
+    }
+    query.with(Sort.by(Sort.Direction.ASC, "timestamp", "id")).limit(size + 1);
+    query.fields().exclude("xml");
 
-  public Page<Logger> getByUserName(String username, Pageable page) {
-    return loggerRepository.findByUserName(username, page).orElseThrow(EntityMissingException::new);
+    List<Logger> logs = mongoTemplate.find(query, Logger.class);
+    if (logs.size() <= size) {
+      return new LogPage(logs, null);
+    }
+    logs = logs.subList(0, size);
+    return new LogPage(logs, token(logs.get(size - 1)));
   }
 
-  public StreamingResponseBody generateLogFile(LogRequest request)
-      throws ParserConfigurationException {
-    createCommandLog(
-        request.getUsername(),
-        request.getTransactionId(),
-        Enums.CommandType.DUMPLOG,
-        null,
-        request.getFilename(),
-        null);
-    Document doc = getLogs(request.getUsername());
+  public StreamingResponseBody generateLogFile(LogRequest request) {
+    // The dump slot is held until the file is streamed, which happens after this returns
+    Bulkhead dump = bulkheads.dump();
+    dump.acquire();
+    AtomicBoolean held = new AtomicBoolean(true);
+    Runnable release =
+        () -> {
+          if (held.compareAndSet(true, false)) {
+            dump.release();
+          }
+        };
+    try {
+      releaseOnAsyncCompletion(release);
+      createCommandLog(
+          request.getUsername(),
+          request.getTransactionId(),
+          Enums.CommandType.DUMPLOG,
+          null,
+          request.getFilename(),
+          null);
+      // Logs are written in the background, make sure everything logged so far is in the dump
+      auditLogWriter.flush();
+    } catch (RuntimeException e) {
+      release.run();
+      throw e;
+    }
 
     return new StreamingResponseBody() {
       @Override
       public void writeTo(OutputStream out) throws IOException {
         try {
-          Transformer transformer = TransformerFactory.newInstance().newTransformer();
-          transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-          transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-
-          StreamResult result = new StreamResult(out);
-          DOMSource source = new DOMSource(doc);
-          transformer.transform(source, result);
-          out.flush();
+          dumpLogExporter.export(request.getUsername(), request.getCompression(), out);
         } catch (Exception e) {
           createErrorEventLog(
               request.getUsername(),
@@ -80,11 +142,31 @@ public class LoggerService {
               request.getFilename(),
               null,
               "Logfile generation error.");
+        } finally {
+          release.run();
         }
       }
     };
   }
 
+  /**
+   * The async request completes after a timeout, an error or a rejected task as well, so the slot
+   * is freed even when writeTo never runs.
+   */
+  private void releaseOnAsyncCompletion(Runnable release) {
+    ServletRequestAttributes attributes =
+        (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+    WebAsyncUtils.getAsyncManager(attributes.getRequest())
+        .registerCallableInterceptor(
+            release,
+            new CallableProcessingInterceptor() {
+              @Override
+              public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                release.run();
+              }
+            });
+  }
+
   /** Wrapper for createErrorEventLog */
   public Logger createTransactionErrorLog(
       Transaction transaction, Enums.CommandType cmdType, String message) {
@@ -141,6 +223,7 @@ public class LoggerService {
       String stockSymbol,
       String filename,
       Double funds) {
+    requestMetrics.command(commandType);
     String finalTransactionNum = transactionNumber != null ? transactionNumber : "1";
     Logger log =
         createLog(
@@ -152,7 +235,7 @@ public class LoggerService {
             filename,
             funds,
             null);
-    return loggerRepository.save(log);
+    return auditLogWriter.write(log);
   }
 
   /**
@@ -181,7 +264,7 @@ public class LoggerService {
     log.setUnitPrice(unitPrice);
     log.setQuoteServerTime(quoteServerTime);
     log.setCryptoKey(cryptoKey);
-    return loggerRepository.save(log);
+    return auditLogWriter.write(log);
   }
 
   /**
@@ -203,7 +286,7 @@ public class LoggerService {
     log.setUserName(user);
     log.setAction(action);
     log.setFunds(funds);
-    return loggerRepository.save(log);
+    return auditLogWriter.write(log);
   }
 
   /**
@@ -237,7 +320,7 @@ public class LoggerService {
             filename,
             funds,
             null);
-    return loggerRepository.save(log);
+    return auditLogWriter.write(log);
   }
 
   /**
@@ -262,6 +345,7 @@ public class LoggerService {
       String filename,
       Double funds,
       String errorMessage) {
+    requestMetrics.commandIfUnknown(commandType);
     String finalTransactionNum = transactionNumber != null ? transactionNumber : "1";
     Logger log =
         createLog(
@@ -273,7 +357,7 @@ public class LoggerService {
             filename,
             funds,
             errorMessage);
-    return loggerRepository.save(log);
+    return auditLogWriter.write(log);
   }
 
   /**
@@ -309,7 +393,29 @@ public class LoggerService {
             filename,
             funds,
             debugMessage);
-    return loggerRepository.save(log);
+    return auditLogWriter.write(log);
+  }
+
+  static String token(Logger log) {
+    String key = log.getTimestamp().toEpochMilli() + ":" + log.getId();
+    byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  // Entries after the one the token was made from
+  static Criteria afterToken(String token) {
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(token);
+      String[] key = new String(bytes, StandardCharsets.UTF_8).split(":", 2);
+      Instant timestamp = Instant.ofEpochMilli(Long.parseLong(key[0]));
+      ObjectId id = new ObjectId(key[1]);
+      return new Criteria()
+          .orOperator(
+              Criteria.where("timestamp").gt(timestamp),
+              Criteria.where("timestamp").is(timestamp).and("_id").gt(id));
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      throw new BadRequestException("Invalid continuation token");
+    }
   }
 
   private Logger createLog(
@@ -342,101 +448,4 @@ public class LoggerService {
     }
     return log;
   }
-
-  private Document getLogs(String username) throws ParserConfigurationException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder builder = factory.newDocumentBuilder();
-    // TODO investigate StAX library in future to make more memory efficient
-    Document doc = builder.newDocument();
-    Element root = doc.createElement("log");
-
-    doc.appendChild(root);
-    // This takes advantage of streams and mongo so it should reduce the memory usage for the query
-    if (username == null) {
-      loggerRepository.findAll().stream().forEach(r -> root.appendChild(createLogElement(doc, r)));
-    } else {
-      loggerRepository.findAllByUserName(username).stream()
-          .forEach(r -> root.appendChild(createLogElement(doc, r)));
-    }
-    return doc;
-  }
-
-  private static Node createLogElement(Document doc, Logger log) {
-    Element logElem;
-    switch (log.getLogType()) {
-      case UserCommandType:
-        logElem = doc.createElement("userCommand");
-        commonElements(doc, logElem, log, true);
-        break;
-      case QuoteServerType:
-        logElem = doc.createElement("quoteServer");
-        commonElements(doc, logElem, log, false);
-        logElem.appendChild(
-            createLogElement(doc, "price", String.format("%.2f", log.getUnitPrice())));
-        logElem.appendChild(createLogElement(doc, "username", log.getUserName()));
-        logElem.appendChild(createLogElement(doc, "stockSymbol", log.getStockSymbol()));
-        logElem.appendChild(
-            createLogElement(
-                doc, "quoteServerTime", Long.toString(log.getQuoteServerTime().toEpochMilli())));
-        logElem.appendChild(createLogElement(doc, "cryptokey", log.getCryptoKey()));
-        break;
-      case AccountTransactionType:
-        logElem = doc.createElement("accountTransaction");
-        commonElements(doc, logElem, log, false);
-        logElem.appendChild(createLogElement(doc, "action", log.getAction()));
-        logElem.appendChild(createLogElement(doc, "username", log.getUserName()));
-        logElem.appendChild(createLogElement(doc, "funds", String.format("%.2f", log.getFunds())));
-        break;
-      case SystemEventType:
-        logElem = doc.createElement("systemEvent");
-        commonElements(doc, logElem, log, true);
-        break;
-      case ErrorEventType:
-        logElem = doc.createElement("errorEvent");
-        commonElements(doc, logElem, log, true);
-        if (log.getMessage() != null)
-          logElem.appendChild(createLogElement(doc, "errorMessage", log.getMessage()));
-        break;
-      case DebugType:
-        logElem = doc.createElement("debugEvent");
-        commonElements(doc, logElem, log, true);
-        if (log.getMessage() != null)
-          logElem.appendChild(createLogElement(doc, "debugMessage", log.getMessage()));
-        break;
-      default:
-        logElem = doc.createElement("errorEvent");
-        commonElements(doc, logElem, log, true);
-        if (log.getMessage() != null)
-          logElem.appendChild(
-              createLogElement(doc, "errorMessage", "Logging Error - Invalid Log Type"));
-    }
-    return logElem;
-  }
-
-  private static void commonElements(
-      Document doc, Element logElem, Logger log, Boolean semiCommon) {
-    logElem.appendChild(
-        createLogElement(doc, "timestamp", Long.toString(log.getTimestamp().toEpochMilli())));
-    logElem.appendChild(createLogElement(doc, "server", log.getServerName()));
-    logElem.appendChild(createLogElement(doc, "transactionNum", log.getTransactionNumber()));
-    if (semiCommon) {
-      logElem.appendChild(createLogElement(doc, "command", log.getCommandType().name()));
-      if (log.getUserName() != null)
-        logElem.appendChild(createLogElement(doc, "username", log.getUserName()));
-      if (log.getStockSymbol() != null)
-        logElem.appendChild(createLogElement(doc, "stockSymbol", log.getStockSymbol()));
-      if (log.getFileName() != null)
-        logElem.appendChild(createLogElement(doc, "filename", log.getFileName()));
-      if (log.getFunds() != null)
-        logElem.appendChild(createLogElement(doc, "funds", String.format("%.2f", log.getFunds())));
-    }
-  }
-
-  private static Node createLogElement(Document doc, String name, String value) {
-
-    Element node = doc.createElement(name);
-    node.appendChild(doc.createTextNode(value));
-
-    return node;
-  }
 }
@@ -0,0 +1,158 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Exceptions.LoginRejectedException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks login credentials on a small bounded pool so a login storm can only take that many request
+ * threads. Logins that find the pool and its queue full are rejected straight away instead of
+ * waiting on a request thread, and so are logins whose check does not finish within the timeout.
+ * The pool plus its queue must stay well below tomcat's thread count. Successful checks can be
+ * remembered for a short time so a client logging in again skips BCrypt.
+ */
+@Service
+public class LoginService {
+
+  private final UserDetailsServiceImpl userDetailsService;
+  private final BCryptPasswordEncoder passwordEncoder;
+  private final Bulkhead bulkhead;
+  private final ThreadPoolExecutor executor;
+  private final Timer queueWait;
+  private final long timeoutMs;
+  // Keyed by a keyed hash of the credentials, holds the password hash they were checked against
+  private final Cache<String, String> credentials;
+  private final HashFunction credentialHash;
+
+  @Autowired
+  public LoginService(
+      UserDetailsServiceImpl userDetailsService,
+      BCryptPasswordEncoder passwordEncoder,
+      Bulkheads bulkheads,
+      MeterRegistry meterRegistry,
+      @Value("${login.threads:4}") int threads,
+      @Value("${login.queue-size:12}") int queueSize,
+      @Value("${login.timeout-ms:2000}") long timeoutMs,
+      @Value("${login.credential-cache-seconds:0}") long credentialCacheSeconds) {
+    this.userDetailsService = userDetailsService;
+    this.passwordEncoder = passwordEncoder;
+    this.bulkhead = bulkheads.login();
+    this.timeoutMs = timeoutMs;
+    AtomicInteger count = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            r -> {
+              Thread thread = new Thread(r, "login-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    new ExecutorServiceMetrics(executor, "login", Tags.empty()).bindTo(meterRegistry);
+    this.queueWait = meterRegistry.timer("login.queue.wait");
+    this.credentials =
+        credentialCacheSeconds > 0
+            ? CacheBuilder.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(credentialCacheSeconds, TimeUnit.SECONDS)
+                .build()
+            : null;
+    byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    this.credentialHash = Hashing.hmacSha256(key);
+  }
+
+  // Holds a login bulkhead slot for as long as the request thread waits on the check
+  public UserDetails authenticate(String username, String password) {
+    if (!bulkhead.tryAcquire()) {
+      throw new LoginRejectedException();
+    }
+    try {
+      return check(username, password);
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private UserDetails check(String username, String password) {
+    long queued = System.nanoTime();
+    Future<UserDetails> result;
+    try {
+      result =
+          executor.submit(
+              () -> {
+                queueWait.record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+                return verify(username, password);
+              });
+    } catch (RejectedExecutionException e) {
+      throw new LoginRejectedException();
+    }
+    try {
+      return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      throw new LoginRejectedException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AuthenticationException) {
+        throw (AuthenticationException) e.getCause();
+      }
+      throw new AuthenticationServiceException("Login failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuthenticationServiceException("Login interrupted", e);
+    }
+  }
+
+  private UserDetails verify(String username, String password) {
+    UserDetails user = userDetailsService.loadUserByUsername(username);
+    String key = null;
+    if (credentials != null) {
+      String login = username + '\0' + password;
+      key = credentialHash.hashString(login, StandardCharsets.UTF_8).toString();
+    }
+    // A changed password no longer matches the hash the cached check was made against
+    if (key != null && user.getPassword().equals(credentials.getIfPresent(key))) {
+      return user;
+    }
+    if (!passwordEncoder.matches(password, user.getPassword())) {
+      throw new BadCredentialsException("Bad credentials");
+    }
+    if (key != null) {
+      credentials.put(key, user.getPassword());
+    }
+    return user;
+  }
+}
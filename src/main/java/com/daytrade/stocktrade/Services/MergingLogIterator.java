@@ -0,0 +1,72 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Logger;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.springframework.data.util.CloseableIterator;
+
+/**
+ * K-way merge of log cursors that are each sorted by timestamp. Only the head of every cursor is
+ * held, so memory depends on the number of cursors and not on how many logs they return. Entries
+ * with the same timestamp come out in cursor order.
+ */
+public class MergingLogIterator implements Iterator<Logger>, AutoCloseable {
+
+  private final List<CloseableIterator<Logger>> cursors;
+  private final PriorityQueue<Head> heads =
+      new PriorityQueue<>(
+          Comparator.comparing((Head head) -> head.log.getTimestamp())
+              .thenComparingInt(head -> head.cursor));
+
+  private boolean started;
+
+  // Cursors can still be added to the list until the first call to hasNext or next
+  public MergingLogIterator(List<CloseableIterator<Logger>> cursors) {
+    this.cursors = cursors;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (!started) {
+      started = true;
+      for (int i = 0; i < cursors.size(); i++) {
+        advance(i);
+      }
+    }
+    return !heads.isEmpty();
+  }
+
+  @Override
+  public Logger next() {
+    Head head = hasNext() ? heads.poll() : null;
+    if (head == null) {
+      throw new NoSuchElementException();
+    }
+    advance(head.cursor);
+    return head.log;
+  }
+
+  @Override
+  public void close() {
+    cursors.forEach(CloseableIterator::close);
+  }
+
+  private void advance(int cursor) {
+    if (cursors.get(cursor).hasNext()) {
+      heads.add(new Head(cursors.get(cursor).next(), cursor));
+    }
+  }
+
+  private static class Head {
+    private final Logger log;
+    private final int cursor;
+
+    private Head(Logger log, int cursor) {
+      this.log = log;
+      this.cursor = cursor;
+    }
+  }
+}
@@ -1,6 +1,12 @@
 package com.daytrade.stocktrade.Services;
 
+import com.daytrade.stocktrade.Repositories.PendingOrderRepository;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -10,27 +16,64 @@ import org.springframework.stereotype.Service;
 public class OrderManagementThread {
 
   private final TransactionService transactionService;
+  private final PendingOrderRepository pendingOrderRepository;
+  private final ScheduledJobs scheduledJobs;
+  // Expiry notifications are handled here, off redisson's pub/sub thread
+  private final ExecutorService expiryExecutor;
 
   @Autowired
-  public OrderManagementThread(TransactionService transactionService) {
+  public OrderManagementThread(
+      TransactionService transactionService,
+      PendingOrderRepository pendingOrderRepository,
+      ScheduledJobs scheduledJobs,
+      @Value("${pending-orders.expiry-threads:4}") int expiryThreads) {
     this.transactionService = transactionService;
+    this.pendingOrderRepository = pendingOrderRepository;
+    this.scheduledJobs = scheduledJobs;
+    this.expiryExecutor =
+        Executors.newFixedThreadPool(
+            expiryThreads,
+            r -> {
+              Thread thread = new Thread(r, "order-expiry");
+              thread.setDaemon(true);
+              return thread;
+            });
   }
 
-  // Expire orders created more than a minute ago
-  @Scheduled(fixedDelay = 1000)
+  // Simple orders are expired by redis when their ttl runs out
+  @PostConstruct
+  public void listenForExpiredOrders() {
+    pendingOrderRepository.onExpired(expiryExecutor, transactionService::expireSimpleOrder);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    expiryExecutor.shutdownNow();
+  }
+
+  // Simple orders whose expiry notification was missed, e.g. while no node was subscribed
+  @Scheduled(fixedDelayString = "${scheduler.sweep-orders-ms:10000}")
+  public void expireMissedOrders() {
+    scheduledJobs.run(
+        "expire-missed-orders",
+        () -> pendingOrderRepository.expireMissed(transactionService::expireSimpleOrder));
+  }
+
+  // Expire limit orders created more than a minute ago
+  @Scheduled(fixedDelayString = "${scheduler.expire-orders-ms:1000}")
   public void expireOrders() {
-    transactionService.expireOrders();
+    scheduledJobs.run("expire-orders", transactionService::expireOrders);
   }
 
   // Check if any of the limit sell orders can be filled
-  @Scheduled(fixedDelay = 60000)
-  public void fillSellLimitOrders() throws InterruptedException {
-    transactionService.fillSellLimitOrders();
+  @Scheduled(fixedDelayString = "${scheduler.fill-orders-ms:60000}")
+  public void fillSellLimitOrders() {
+    scheduledJobs.run("fill-sell-orders", transactionService::fillSellLimitOrders);
   }
 
   // Check if any of the limit buy orders can be filled
-  @Scheduled(fixedDelay = 60000)
-  public void fillBuyLimitOrders() throws InterruptedException {
-    transactionService.fillBuyLimitOrders();
+  @Scheduled(fixedDelayString = "${scheduler.fill-orders-ms:60000}")
+  public void fillBuyLimitOrders() {
+    scheduledJobs.run("fill-buy-orders", transactionService::fillBuyLimitOrders);
   }
 }
@@ -10,6 +10,7 @@ import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.time.Instant;
+import org.redisson.api.RAtomicLong;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,11 +20,18 @@ import org.springframework.stereotype.Service;
 @Service
 public class QuoteService {
 
+  static final String LOCK = "quote-service-lock";
+  static final String NEXT_SEND = "quote-service-next-send";
+
   private final LoggerService loggerService;
   private final CacheService cacheService;
   private final Boolean debug;
   // This locks through the redis to support multiple servers
   private final RLock mutex;
+  // Earliest time in ms the next request may be sent to the quote server, shared by all servers
+  private final RAtomicLong nextSend;
+  private final String host;
+  private final int port;
   private static double delay = 50;
 
   @Autowired
@@ -31,10 +39,15 @@ public class QuoteService {
       LoggerService loggerService,
       CacheService cacheService,
       RedissonClient redissonClient,
+      @Value("${quote-server.host:192.168.4.2}") String host,
+      @Value("${quote-server.port:4442}") int port,
       @Value("${security.debug}") Boolean debug) {
     this.loggerService = loggerService;
     this.cacheService = cacheService;
-    this.mutex = redissonClient.getLock("quote-service-lock");
+    this.mutex = redissonClient.getLock(LOCK);
+    this.nextSend = redissonClient.getAtomicLong(NEXT_SEND);
+    this.host = host;
+    this.port = port;
     this.debug = debug;
   }
 
@@ -46,9 +59,23 @@ public class QuoteService {
       Socket qsSocket = null;
       PrintWriter out = null;
       BufferedReader in = null;
-      mutex.lock();
       try {
-        qsSocket = new Socket("192.168.4.2", 4442);
+        // delay to stop overloading quote server, the socket is only opened once the slot is due
+        Thread.sleep(Math.max(0, reserveSend() - System.currentTimeMillis()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        loggerService.createErrorEventLog(
+            userId,
+            transactionNumber,
+            Enums.CommandType.QUOTE,
+            stockSymbol,
+            null,
+            null,
+            "Error: " + e.getMessage());
+        throw new BadRequestException("Big Bad");
+      }
+      try {
+        qsSocket = new Socket(host, port);
         out = new PrintWriter(qsSocket.getOutputStream(), true);
         in = new BufferedReader(new InputStreamReader(qsSocket.getInputStream()));
       } catch (UnknownHostException e) {
@@ -88,17 +115,6 @@ public class QuoteService {
                   + ","
                   + userId.replace("\n", "").replace("\r", ""));
         }
-        // Larger delay at startup, gradually decrease to 8ms
-        if (delay > 8) {
-          delay = delay * 0.99;
-        } else {
-          delay = 8;
-        }
-        // delay to stop overloading quote server
-        Thread.sleep((long) delay);
-        // Unlock now so new requests can be sent before he response is received. Lock only has to
-        // spread requests
-        mutex.unlock();
         String fromServer = "";
         if (in != null) {
           fromServer = in.readLine();
@@ -114,21 +130,14 @@ public class QuoteService {
           qsSocket.close();
         }
 
-        // serverReponse is returned as "quote, symbol, userid, timestamp, cryptokey"
-        String[] serverResponse = fromServer.split(",");
-
-        Double quoteValue = parseQuoteToDouble(serverResponse[0]);
-
-        Long serverTime = parseTimetoLong(serverResponse[3]);
-
-        Instant timestamp = Instant.ofEpochMilli(serverTime);
-
-        String cryptokey = serverResponse[4];
-
+        Quote freshQuote = parse(fromServer, userId, transactionNumber, stockSymbol);
         loggerService.createQuoteServerLog(
-            userId, transactionNumber, stockSymbol, quoteValue, timestamp, cryptokey);
-        Quote freshQuote =
-            new Quote(userId, transactionNumber, stockSymbol, quoteValue, timestamp, cryptokey);
+            userId,
+            transactionNumber,
+            stockSymbol,
+            freshQuote.getUnitPrice(),
+            freshQuote.getTimestamp(),
+            freshQuote.getCryptoKey());
         cacheService.populateCacheQuote(freshQuote, stockSymbol);
         return freshQuote;
       } catch (IOException ex) {
@@ -165,11 +174,36 @@ public class QuoteService {
     return cachedQuote;
   }
 
-  private Double parseQuoteToDouble(String quote) {
-    return Double.parseDouble(quote);
+  // Takes the next send slot, requests are spread delay ms apart. The lock is only held for the
+  // reservation, the wait for the slot happens after it is released.
+  private long reserveSend() {
+    mutex.lock();
+    try {
+      long sendAt = Math.max(System.currentTimeMillis(), nextSend.get());
+      nextSend.set(sendAt + nextDelay());
+      return sendAt;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  // Larger delay at startup, gradually decrease to 8ms
+  static synchronized long nextDelay() {
+    if (delay > 8) {
+      delay = delay * 0.99;
+    } else {
+      delay = 8;
+    }
+    return (long) delay;
   }
 
-  private Long parseTimetoLong(String time) {
-    return Long.parseLong(time);
+  // serverReponse is returned as "quote, symbol, userid, timestamp, cryptokey"
+  public static Quote parse(
+      String fromServer, String userId, String transactionNumber, String stockSymbol) {
+    String[] serverResponse = fromServer.split(",");
+    Double quoteValue = Double.parseDouble(serverResponse[0]);
+    Instant timestamp = Instant.ofEpochMilli(Long.parseLong(serverResponse[3]));
+    String cryptokey = serverResponse[4];
+    return new Quote(userId, transactionNumber, stockSymbol, quoteValue, timestamp, cryptokey);
   }
 }
@@ -0,0 +1,176 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Config.RateLimitProperties;
+import com.daytrade.stocktrade.Models.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.redisson.api.RBatch;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per user budgets for quotes, order creation and dumps, shared by every node through redis
+ * limiters. Each user gets the budget of their tier, so one user looping on quotes can only use
+ * up their own share. A failing redis lets requests through rather than turning everyone away.
+ * Limiters expire after rate-limit.idle-seconds without use, and a limiter that redis lost is set
+ * up again on its next use. The expiry is pushed back at most every half idle period, not on every
+ * request.
+ */
+@Service
+public class RateLimitService {
+
+  public enum Budget {
+    QUOTE,
+    ORDER,
+    DUMP
+  }
+
+  private final RedissonClient redissonClient;
+  private final UserService userService;
+  private final RateLimitProperties properties;
+  private final MeterRegistry meterRegistry;
+  // Limiters whose rate is already set in redis, saves a round trip per request
+  private final Cache<String, Limiter> limiters;
+
+  @Autowired
+  public RateLimitService(
+      RedissonClient redissonClient,
+      UserService userService,
+      RateLimitProperties properties,
+      MeterRegistry meterRegistry) {
+    this.redissonClient = redissonClient;
+    this.userService = userService;
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.limiters =
+        CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(properties.getIdleSeconds(), TimeUnit.SECONDS)
+            .build();
+  }
+
+  // False when the user is out of this budget for now
+  public boolean tryAcquire(String username, Budget budget) {
+    if (!properties.isEnabled()) {
+      return true;
+    }
+    String tier = tier(username);
+    RateLimitProperties.Budget limit = budget(tier, budget);
+    if (limit == null) {
+      return true;
+    }
+    // The tier and rate are part of the key, a changed limit starts a new limiter
+    String key =
+        String.format(
+            "rate-limit:%s:%s:%d:%d:%s",
+            budget, tier, limit.getPermits(), limit.getIntervalSeconds(), username);
+    boolean allowed;
+    try {
+      allowed = tryAcquire(key, limit);
+    } catch (ExecutionException | RuntimeException e) {
+      // Redis restarted, was flushed or evicted the limiter, set its rate again and retry once
+      limiters.invalidate(key);
+      try {
+        allowed = tryAcquire(key, limit);
+      } catch (ExecutionException | RuntimeException retry) {
+        meterRegistry.counter("rate.limit.errors", "budget", budget.name()).increment();
+        return true;
+      }
+    }
+    meterRegistry
+        .counter(
+            allowed ? "rate.limit.allowed" : "rate.limit.throttled",
+            "budget",
+            budget.name(),
+            "tier",
+            tier)
+        .increment();
+    return allowed;
+  }
+
+  private boolean tryAcquire(String key, RateLimitProperties.Budget limit)
+      throws ExecutionException {
+    Limiter limiter =
+        limiters.get(
+            key,
+            () -> {
+              RRateLimiter created = redissonClient.getRateLimiter(key);
+              created.trySetRate(
+                  RateType.OVERALL,
+                  limit.getPermits(),
+                  limit.getIntervalSeconds(),
+                  RateIntervalUnit.SECONDS);
+              return new Limiter(created);
+            });
+    boolean allowed = limiter.limiter.tryAcquire();
+    long idleSeconds = idleSeconds(limit);
+    long now = System.currentTimeMillis();
+    // Pushed back while in use so only idle users' limiters expire, including old rates' keys
+    if (now - limiter.expiryPushedAt >= TimeUnit.SECONDS.toMillis(idleSeconds) / 2) {
+      limiter.expiryPushedAt = now;
+      expire(key, idleSeconds);
+    }
+    return allowed;
+  }
+
+  // The limiter keeps its state next to the config hash, each key needs its own ttl
+  private void expire(String key, long seconds) {
+    RBatch batch = redissonClient.createBatch();
+    for (String name : new String[] {key, "{" + key + "}:value", "{" + key + "}:permits"}) {
+      batch.getBucket(name).expireAsync(seconds, TimeUnit.SECONDS);
+    }
+    batch.executeAsync();
+  }
+
+  // Never shorter than the interval, or the limiter would forget permits still being counted
+  private long idleSeconds(RateLimitProperties.Budget limit) {
+    return Math.max(properties.getIdleSeconds(), 2 * limit.getIntervalSeconds());
+  }
+
+  // Seconds until the budget refills
+  public long retryAfterSeconds(String username, Budget budget) {
+    RateLimitProperties.Budget limit = budget(tier(username), budget);
+    return limit == null ? 1 : Math.max(1, limit.getIntervalSeconds());
+  }
+
+  private String tier(String username) {
+    User user = userService.findByUsername(username);
+    String tier = user == null ? null : user.getTier();
+    return tier != null && properties.getTiers().containsKey(tier)
+        ? tier
+        : properties.getDefaultTier();
+  }
+
+  // Null when the tier is not configured, the budget is then unlimited
+  private RateLimitProperties.Budget budget(String tier, Budget budget) {
+    RateLimitProperties.Tier limits = properties.getTiers().get(tier);
+    if (limits == null) {
+      return null;
+    }
+    switch (budget) {
+      case QUOTE:
+        return limits.getQuote();
+      case ORDER:
+        return limits.getOrder();
+      default:
+        return limits.getDump();
+    }
+  }
+
+  private static class Limiter {
+    private final RRateLimiter limiter;
+    // When the ttl of the limiter's keys was last pushed back, in ms
+    private volatile long expiryPushedAt;
+
+    private Limiter(RRateLimiter limiter) {
+      this.limiter = limiter;
+    }
+  }
+}
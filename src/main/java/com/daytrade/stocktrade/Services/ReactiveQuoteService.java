@@ -0,0 +1,156 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Exceptions.BadRequestException;
+import com.daytrade.stocktrade.Models.Quote;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.redisson.api.RAtomicLongReactive;
+import org.redisson.api.RLockReactive;
+import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.tcp.TcpClient;
+
+/**
+ * Non blocking version of QuoteService. It reads and fills the same redis quote cache and spaces
+ * its requests through the same send slots, so quotes from both paths share one rate to the quote
+ * server. No thread waits on the slot or the socket. Audit logs are written on the bounded elastic
+ * scheduler, a full log queue can park the writing thread.
+ */
+@Service
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveQuoteService {
+
+  private static final int MAX_LINE = 1024;
+  // Held only while a slot is reserved, the lease frees it if this node dies in between
+  private static final long LOCK_LEASE_SECONDS = 10;
+
+  private final LoggerService loggerService;
+  private final RMapCacheReactive<String, Quote> quotes;
+  private final RLockReactive mutex;
+  private final RAtomicLongReactive nextSend;
+  private final TcpClient client;
+  private final Duration timeout;
+  private final Boolean debug;
+
+  @Autowired
+  public ReactiveQuoteService(
+      LoggerService loggerService,
+      RedissonReactiveClient redissonReactive,
+      @Value("${quote-server.host:192.168.4.2}") String host,
+      @Value("${quote-server.port:4442}") int port,
+      @Value("${reactive.quote-timeout-ms:5000}") long timeoutMs,
+      @Value("${security.debug}") Boolean debug) {
+    this.loggerService = loggerService;
+    this.quotes = redissonReactive.getMapCache("quotes");
+    this.mutex = redissonReactive.getLock(QuoteService.LOCK);
+    this.nextSend = redissonReactive.getAtomicLong(QuoteService.NEXT_SEND);
+    this.client =
+        TcpClient.create()
+            .host(host)
+            .port(port)
+            .doOnConnected(
+                connection -> connection.addHandlerLast(new LineBasedFrameDecoder(MAX_LINE)));
+    this.timeout = Duration.ofMillis(timeoutMs);
+    this.debug = debug;
+  }
+
+  public Mono<Quote> getQuote(String userId, String stockSymbol, String transactionNumber) {
+    return quotes
+        .get(stockSymbol)
+        .publishOn(Schedulers.boundedElastic())
+        .doOnNext(
+            cached -> {
+              if (debug) {
+                loggerService.createSystemEventLog(
+                    userId,
+                    transactionNumber,
+                    Enums.CommandType.QUOTE,
+                    stockSymbol,
+                    null,
+                    cached.getUnitPrice());
+              }
+            })
+        .switchIfEmpty(Mono.defer(() -> fetch(userId, stockSymbol, transactionNumber)));
+  }
+
+  private Mono<Quote> fetch(String userId, String stockSymbol, String transactionNumber) {
+    // I don't think we need these replaces but just incase
+    String request =
+        stockSymbol.replace("\n", "").replace("\r", "")
+            + ","
+            + userId.replace("\n", "").replace("\r", "")
+            + "\n";
+    return reserveSend()
+        .flatMap(
+            sendAt ->
+                Mono.delay(Duration.ofMillis(Math.max(0, sendAt - System.currentTimeMillis()))))
+        .then(client.connect())
+        .flatMap(
+            connection ->
+                connection
+                    .outbound()
+                    .sendString(Mono.just(request), StandardCharsets.UTF_8)
+                    .then()
+                    .then(connection.inbound().receive().asString(StandardCharsets.UTF_8).next())
+                    .doFinally(signal -> connection.dispose()))
+        .timeout(timeout)
+        .publishOn(Schedulers.boundedElastic())
+        .map(line -> parse(line, userId, stockSymbol, transactionNumber))
+        // Same ttl and max idle as the quotes cache in RedisConfig
+        .flatMap(
+            quote ->
+                quotes
+                    .fastPut(stockSymbol, quote, 1, TimeUnit.MINUTES, 12, TimeUnit.MINUTES)
+                    .thenReturn(quote))
+        .publishOn(Schedulers.boundedElastic())
+        .onErrorMap(
+            e -> !(e instanceof BadRequestException),
+            e -> {
+              loggerService.createErrorEventLog(
+                  userId,
+                  transactionNumber,
+                  Enums.CommandType.QUOTE,
+                  stockSymbol,
+                  null,
+                  null,
+                  "Error: " + e.getMessage());
+              return new BadRequestException("Big Bad");
+            });
+  }
+
+  // Same slots as QuoteService.reserveSend, the lock is owned by a random id instead of a thread
+  private Mono<Long> reserveSend() {
+    long owner = ThreadLocalRandom.current().nextLong();
+    return mutex
+        .lock(LOCK_LEASE_SECONDS, TimeUnit.SECONDS, owner)
+        .then(nextSend.get())
+        .flatMap(
+            next -> {
+              long sendAt = Math.max(System.currentTimeMillis(), next);
+              return nextSend.set(sendAt + QuoteService.nextDelay()).thenReturn(sendAt);
+            })
+        .flatMap(sendAt -> mutex.unlock(owner).thenReturn(sendAt));
+  }
+
+  private Quote parse(String line, String userId, String stockSymbol, String transactionNumber) {
+    Quote quote = QuoteService.parse(line, userId, transactionNumber, stockSymbol);
+    loggerService.createQuoteServerLog(
+        userId,
+        transactionNumber,
+        stockSymbol,
+        quote.getUnitPrice(),
+        quote.getTimestamp(),
+        quote.getCryptoKey());
+    return quote;
+  }
+}
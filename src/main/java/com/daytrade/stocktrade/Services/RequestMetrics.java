@@ -0,0 +1,118 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Enums;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Metrics of each user command request. The latency and the mongo round trips, documents and time
+ * of a request are recorded tagged with its command once it is done, so /actuator/metrics shows
+ * what a single BUY or SELL costs. The command is known once the request logs it, requests that
+ * never name a command are not recorded.
+ */
+@Service
+public class RequestMetrics {
+
+  private static final String ALL = "all";
+
+  private final MeterRegistry meterRegistry;
+  // Context of the request running on this thread, null outside of a request
+  private final ThreadLocal<Context> current = new ThreadLocal<>();
+
+  @Autowired
+  public RequestMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  public void beginRequest() {
+    current.set(new Context());
+  }
+
+  public void endRequest(long nanos) {
+    Context context = current.get();
+    current.remove();
+    if (context == null || context.command == null) {
+      return;
+    }
+    String command = context.command.name();
+    Timer.builder("commands")
+        .tag("command", command)
+        .publishPercentiles(0.5, 0.99, 0.999)
+        .publishPercentileHistogram()
+        .register(meterRegistry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+    MongoUsage total = new MongoUsage();
+    for (Map.Entry<String, MongoUsage> entry : context.mongo.entrySet()) {
+      record(command, entry.getKey(), entry.getValue());
+      total.add(entry.getValue());
+    }
+    record(command, ALL, total);
+  }
+
+  // The command the request runs
+  public void command(Enums.CommandType command) {
+    Context context = current.get();
+    if (context != null && command != null) {
+      context.command = command;
+    }
+  }
+
+  // Used by error logs, so a request that fails before its command is logged is still counted
+  public void commandIfUnknown(Enums.CommandType command) {
+    Context context = current.get();
+    if (context != null && context.command == null) {
+      context.command = command;
+    }
+  }
+
+  public void mongo(String collection, long nanos, int documents) {
+    Context context = current.get();
+    if (context != null) {
+      MongoUsage usage = context.mongo.computeIfAbsent(collection, c -> new MongoUsage());
+      usage.roundTrips++;
+      usage.documents += documents;
+      usage.nanos += nanos;
+    }
+  }
+
+  private void record(String command, String collection, MongoUsage usage) {
+    DistributionSummary.builder("commands.mongo.round.trips")
+        .tags("command", command, "collection", collection)
+        .publishPercentiles(0.5, 0.99)
+        .register(meterRegistry)
+        .record(usage.roundTrips);
+    DistributionSummary.builder("commands.mongo.documents")
+        .tags("command", command, "collection", collection)
+        .publishPercentiles(0.5, 0.99)
+        .register(meterRegistry)
+        .record(usage.documents);
+    Timer.builder("commands.mongo.time")
+        .tags("command", command, "collection", collection)
+        .publishPercentiles(0.5, 0.99)
+        .register(meterRegistry)
+        .record(usage.nanos, TimeUnit.NANOSECONDS);
+  }
+
+  private static class Context {
+    private Enums.CommandType command;
+    private final Map<String, MongoUsage> mongo = new HashMap<>();
+  }
+
+  private static class MongoUsage {
+    private long roundTrips;
+    private long documents;
+    private long nanos;
+
+    private void add(MongoUsage other) {
+      roundTrips += other.roundTrips;
+      documents += other.documents;
+      nanos += other.nanos;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Config.VirtualThreadConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs each background job on a thread of its own, so the scheduler thread only hands runs off
+ * and a slow job can not hold up the others. A run that is due while the previous one of the same
+ * job is still going is skipped. With threads.virtual on, the job threads are virtual threads.
+ *
+ * <p>Metrics per job: scheduled.jobs.duration, scheduled.jobs.lag from the scheduler handing the
+ * run off to it starting, scheduled.jobs.skipped, scheduled.jobs.failures and
+ * scheduled.jobs.since.success in seconds.
+ */
+@Service
+public class ScheduledJobs {
+
+  private static final Logger log = LoggerFactory.getLogger(ScheduledJobs.class);
+
+  private final MeterRegistry meterRegistry;
+  private final boolean virtualThreads;
+  private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ScheduledJobs(
+      MeterRegistry meterRegistry, @Value("${threads.virtual:false}") boolean virtualThreads) {
+    this.meterRegistry = meterRegistry;
+    this.virtualThreads = virtualThreads;
+  }
+
+  public void run(String name, Body body) {
+    Job job = jobs.computeIfAbsent(name, Job::new);
+    if (!job.running.compareAndSet(false, true)) {
+      meterRegistry.counter("scheduled.jobs.skipped", "job", name).increment();
+      return;
+    }
+    long handedOff = System.nanoTime();
+    job.executor.execute(
+        () -> {
+          long start = System.nanoTime();
+          job.lag.record(start - handedOff, TimeUnit.NANOSECONDS);
+          try {
+            body.run();
+            job.lastSuccess.set(System.currentTimeMillis());
+          } catch (Exception e) {
+            meterRegistry.counter("scheduled.jobs.failures", "job", name).increment();
+            // Not rethrown, that would only replace the job's thread, the next run still happens
+            log.error("Scheduled job {} failed", name, e);
+          } finally {
+            job.duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            job.running.set(false);
+          }
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    jobs.values().forEach(job -> job.executor.shutdownNow());
+  }
+
+  private ThreadFactory threads(String name) {
+    if (virtualThreads) {
+      return VirtualThreadConfig.factory("job-" + name + "-");
+    }
+    return r -> {
+      Thread thread = new Thread(r, "job-" + name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @FunctionalInterface
+  public interface Body {
+    void run() throws Exception;
+  }
+
+  private class Job {
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong lastSuccess = new AtomicLong(System.currentTimeMillis());
+    private final ExecutorService executor;
+    private final Timer duration;
+    private final Timer lag;
+
+    private Job(String name) {
+      this.executor = Executors.newSingleThreadExecutor(threads(name));
+      this.duration =
+          Timer.builder("scheduled.jobs.duration")
+              .tag("job", name)
+              .publishPercentiles(0.5, 0.99)
+              .register(meterRegistry);
+      this.lag = Timer.builder("scheduled.jobs.lag").tag("job", name).register(meterRegistry);
+      Gauge.builder(
+              "scheduled.jobs.since.success",
+              lastSuccess,
+              last -> (System.currentTimeMillis() - last.get()) / 1000.0)
+          .tag("job", name)
+          .register(meterRegistry);
+    }
+  }
+}
@@ -1,18 +1,69 @@
 package com.daytrade.stocktrade.Services;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.daytrade.stocktrade.Config.Security.SecurityConsts;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Verifies JWTs with one shared verifier. Verified tokens are cached by their sha-256 digest until
+ * they expire, so a token is only run through HMAC-SHA512 the first time it is seen.
+ */
 @Service
 public class SecurityService {
 
+  private final JWTVerifier verifier;
+  private final Cache<String, VerifiedToken> verified;
+
+  @Autowired
+  public SecurityService(
+      @Value("${security.secret}") String secret,
+      @Value("${security.expiry-ms}") long expiryMs,
+      @Value("${security.token-cache-size:100000}") int cacheSize) {
+    this.verifier = JWT.require(Algorithm.HMAC512(secret.getBytes())).build();
+    this.verified =
+        CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(expiryMs, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
   public String getUserFromJwt(String token) {
     // Load user from the jwt
-    return JWT.require(Algorithm.HMAC512(SecurityConsts.SECRET.getBytes()))
-        .build()
-        .verify(token.replace(SecurityConsts.AUTH_HEADER_PREFIX, ""))
-        .getSubject();
+    String jwt = token.replace(SecurityConsts.AUTH_HEADER_PREFIX, "");
+    String digest = Hashing.sha256().hashString(jwt, StandardCharsets.UTF_8).toString();
+    VerifiedToken cached = verified.getIfPresent(digest);
+    if (cached != null) {
+      if (cached.expiresAt == null || cached.expiresAt.isAfter(Instant.now())) {
+        return cached.subject;
+      }
+      verified.invalidate(digest);
+      throw new TokenExpiredException("The Token has expired on " + cached.expiresAt + ".");
+    }
+    DecodedJWT decoded = verifier.verify(jwt);
+    Instant expiresAt = decoded.getExpiresAt() == null ? null : decoded.getExpiresAt().toInstant();
+    verified.put(digest, new VerifiedToken(decoded.getSubject(), expiresAt));
+    return decoded.getSubject();
+  }
+
+  private static class VerifiedToken {
+    private final String subject;
+    private final Instant expiresAt;
+
+    private VerifiedToken(String subject, Instant expiresAt) {
+      this.subject = subject;
+      this.expiresAt = expiresAt;
+    }
   }
 }
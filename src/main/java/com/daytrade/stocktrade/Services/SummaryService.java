@@ -0,0 +1,104 @@
+package com.daytrade.stocktrade.Services;
+
+import com.daytrade.stocktrade.Models.Account;
+import com.daytrade.stocktrade.Models.Summary;
+import com.daytrade.stocktrade.Models.Transactions.PendingTransaction;
+import com.daytrade.stocktrade.Models.Transactions.Transaction;
+import com.daytrade.stocktrade.Models.UserSummary;
+import com.daytrade.stocktrade.Repositories.SummaryRepository;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+@Service
+public class SummaryService {
+
+  private final MongoTemplate mongoTemplate;
+  private final SummaryRepository summaryRepository;
+  private final int closedLimit;
+
+  @Autowired
+  public SummaryService(
+      MongoTemplate mongoTemplate,
+      SummaryRepository summaryRepository,
+      @Value("${summary.closed-limit:100}") int closedLimit) {
+    this.mongoTemplate = mongoTemplate;
+    this.summaryRepository = summaryRepository;
+    this.closedLimit = closedLimit;
+  }
+
+  public Optional<Summary> getSummary(String username) {
+    return summaryRepository.findById(username).map(UserSummary::toSummary);
+  }
+
+  // Replace the whole summary, used to seed users that predate the read model
+  public Summary rebuild(
+      Account account,
+      List<PendingTransaction> pendingTransactions,
+      List<Transaction> openTriggers,
+      Stream<Transaction> closedTransactions) {
+    UserSummary summary = new UserSummary(account.getName());
+    summary.setAccount(account);
+    pendingTransactions.forEach(t -> summary.getPendingTransactions().put(t.getId(), t));
+    openTriggers.forEach(t -> summary.getOpenTriggers().put(t.getId(), t));
+    // Only the newest closedLimit transactions are kept, the rest pass straight through
+    Deque<Transaction> closed = new ArrayDeque<>(closedLimit);
+    closedTransactions.forEach(
+        t -> {
+          closed.addLast(t);
+          if (closed.size() > closedLimit) {
+            closed.removeFirst();
+          }
+        });
+    summary.setClosedTransactions(new ArrayList<>(closed));
+    return summaryRepository.save(summary).toSummary();
+  }
+
+  public void updateAccount(Account account) {
+    update(account.getName(), new Update().set("account", account));
+  }
+
+  // Order was created and is waiting on a commit or trigger
+  public void addPending(PendingTransaction transaction) {
+    update(
+        transaction.getUserName(),
+        new Update().set("pendingTransactions." + transaction.getId(), transaction));
+  }
+
+  // Limit order moved from pending to committed
+  public void openTrigger(Transaction transaction) {
+    update(
+        transaction.getUserName(),
+        new Update()
+            .unset("pendingTransactions." + transaction.getId())
+            .set("openTriggers." + transaction.getId(), transaction));
+  }
+
+  // Order reached a final state (filled, canceled or expired)
+  public void close(Transaction transaction) {
+    update(
+        transaction.getUserName(),
+        new Update()
+            .unset("pendingTransactions." + transaction.getId())
+            .unset("openTriggers." + transaction.getId())
+            .push("closedTransactions")
+            .slice(-closedLimit)
+            .each(transaction));
+  }
+
+  // Missing summaries are seeded on the first DISPLAY_SUMMARY so never upsert a partial one
+  private void update(String username, Update update) {
+    mongoTemplate.updateFirst(
+        Query.query(Criteria.where("_id").is(username)), update, UserSummary.class);
+  }
+}
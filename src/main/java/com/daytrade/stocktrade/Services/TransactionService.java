@@ -8,13 +8,21 @@ import com.daytrade.stocktrade.Models.Exceptions.EntityMissingException;
 import com.daytrade.stocktrade.Models.Quote;
 import com.daytrade.stocktrade.Models.Transactions.PendingTransaction;
 import com.daytrade.stocktrade.Models.Transactions.Transaction;
+import com.daytrade.stocktrade.Repositories.PendingOrderRepository;
 import com.daytrade.stocktrade.Repositories.PendingTransactionRepository;
 import com.daytrade.stocktrade.Repositories.TransactionRepository;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
@@ -26,7 +34,12 @@ public class TransactionService {
   private final LoggerService loggerService;
   private final QuoteService quoteService;
   private final PendingTransactionRepository pendingTransactionRepository;
+  private final PendingOrderRepository pendingOrderRepository;
+  private final SummaryService summaryService;
+  private final MongoTemplate mongoTemplate;
+  private final Bulkheads bulkheads;
   private final Boolean debug;
+  private final long claimTimeoutSeconds;
 
   public TransactionService(
       TransactionRepository transactionRepository,
@@ -34,14 +47,24 @@ public class TransactionService {
       LoggerService loggerService,
       QuoteService quoteService,
       PendingTransactionRepository pendingTransactionRepository,
-      @Value("${security.debug}") Boolean debug) {
+      PendingOrderRepository pendingOrderRepository,
+      SummaryService summaryService,
+      MongoTemplate mongoTemplate,
+      Bulkheads bulkheads,
+      @Value("${security.debug}") Boolean debug,
+      @Value("${limit-orders.claim-timeout-seconds:60}") long claimTimeoutSeconds) {
 
     this.transactionRepository = transactionRepository;
     this.accountService = accountService;
     this.loggerService = loggerService;
     this.quoteService = quoteService;
     this.pendingTransactionRepository = pendingTransactionRepository;
+    this.pendingOrderRepository = pendingOrderRepository;
+    this.summaryService = summaryService;
+    this.mongoTemplate = mongoTemplate;
+    this.bulkheads = bulkheads;
     this.debug = debug;
+    this.claimTimeoutSeconds = claimTimeoutSeconds;
   }
 
   public Quote getQuote(String userId, String stockSymbol, String transId)
@@ -83,8 +106,10 @@ public class TransactionService {
     transaction.setCashAmount(quote * stockAmount);
     transaction.setStockAmount(stockAmount);
     transaction.setStatus(Enums.TransactionStatus.PENDING);
-    // Create entry in pending collection
-    return pendingTransactionRepository.save(transaction);
+    // Simple orders wait for their commit in redis
+    PendingTransaction pending = pendingOrderRepository.save(transaction);
+    summaryService.addPending(pending);
+    return pending;
   }
 
   public Transaction createSimpleSellTransaction(PendingTransaction transaction)
@@ -119,27 +144,46 @@ public class TransactionService {
 
   // Make sure to change status to committed or filled here
   public Transaction commitSimpleOrder(PendingTransaction transaction) {
-    pendingTransactionRepository.delete(transaction);
+    if (!pendingOrderRepository.delete(transaction)) {
+      // Expired or committed by another request since it was read
+      throw new EntityMissingException();
+    }
     transaction.setStatus(Enums.TransactionStatus.FILLED);
+    summaryService.close(transaction);
     return transactionRepository.save(transaction);
   }
 
+  // Called once per simple order when its redis ttl runs out. No refunds needed
+  public void expireSimpleOrder(PendingTransaction transaction) {
+    transaction.setStatus(Enums.TransactionStatus.EXPIRED);
+    Enums.CommandType cmdType =
+        transaction.getType().equals(Enums.TransactionType.BUY)
+            ? Enums.CommandType.CANCEL_BUY
+            : Enums.CommandType.CANCEL_SELL;
+    loggerService.createTransactionSysEventLog(transaction, cmdType, null);
+    summaryService.close(transaction);
+    transactionRepository.save(transaction);
+  }
+
   public void expireOrders() {
-    // Get All transactions created but not confirmed more than a minute ago
+    releaseStaleClaims();
+    // Get All limit transactions created but not confirmed more than a minute ago
     List<PendingTransaction> expiredTransactions =
         pendingTransactionRepository.findAllByCreatedDateBefore(
             Instant.now().minus(1, ChronoUnit.MINUTES));
     for (Transaction transaction : expiredTransactions) {
-      // Cancel Simple transactions. No refunds needed
-      if (transaction.getType().equals(Enums.TransactionType.BUY)
-          || transaction.getType().equals(Enums.TransactionType.SELL)) {
-        transaction.setStatus(Enums.TransactionStatus.EXPIRED);
-        Enums.CommandType cmdType =
-            transaction.getType().equals(Enums.TransactionType.BUY)
-                ? Enums.CommandType.CANCEL_BUY
-                : Enums.CommandType.CANCEL_SELL;
-        loggerService.createTransactionSysEventLog(transaction, cmdType, null);
-      } else if (transaction.getType().equals(Enums.TransactionType.BUY_AT)) {
+      // Skip orders that were triggered or canceled since the query ran
+      if (mongoTemplate.findAndRemove(
+              Query.query(
+                  Criteria.where("id")
+                      .is(transaction.getId())
+                      .and("status")
+                      .is(Enums.TransactionStatus.PENDING)),
+              PendingTransaction.class)
+          == null) {
+        continue;
+      }
+      if (transaction.getType().equals(Enums.TransactionType.BUY_AT)) {
         // Only committed buy limit orders have refunds needed
         // So no refund needed
         transaction.setStatus(Enums.TransactionStatus.EXPIRED);
@@ -152,22 +196,17 @@ public class TransactionService {
         loggerService.createTransactionSysEventLog(
             transaction, Enums.CommandType.CANCEL_SELL, null);
       }
+      summaryService.close(transaction);
+      transaction.setId(null);
+      transactionRepository.save(transaction);
     }
-    pendingTransactionRepository.deleteAll(expiredTransactions);
-    expiredTransactions.stream()
-        .forEach(
-            t -> {
-              t.setId(null);
-              transactionRepository.save(t);
-            });
   }
 
   public PendingTransaction getPendingSellTransactions(Command cmd) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<PendingTransaction> sellTransactions =
-        pendingTransactionRepository.findByUserNameAndTypeOrderByCreatedDate(
-            userName, Enums.TransactionType.SELL);
-    if (sellTransactions.size() < 1) {
+    Optional<PendingTransaction> sellTransaction =
+        pendingOrderRepository.findMostRecent(userName, Enums.TransactionType.SELL);
+    if (sellTransaction.isEmpty()) {
       loggerService.createErrorEventLog(
           cmd.getUsername(),
           cmd.getTransactionId(),
@@ -178,17 +217,16 @@ public class TransactionService {
           "No open sell requests.");
       throw new EntityMissingException();
     }
-    PendingTransaction recentTransaction = sellTransactions.get(0);
+    PendingTransaction recentTransaction = sellTransaction.get();
     recentTransaction.setTransactionId(cmd.getTransactionId());
     return recentTransaction;
   }
 
   public PendingTransaction getPendingBuyTransactions(Command cmd) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<PendingTransaction> buyTransactions =
-        pendingTransactionRepository.findByUserNameAndTypeOrderByCreatedDate(
-            userName, Enums.TransactionType.BUY);
-    if (buyTransactions.size() < 1) {
+    Optional<PendingTransaction> buyTransaction =
+        pendingOrderRepository.findMostRecent(userName, Enums.TransactionType.BUY);
+    if (buyTransaction.isEmpty()) {
       loggerService.createErrorEventLog(
           cmd.getUsername(),
           cmd.getTransactionId(),
@@ -199,7 +237,7 @@ public class TransactionService {
           "No open buy requests.");
       throw new EntityMissingException();
     }
-    PendingTransaction recentTransaction = buyTransactions.get(0);
+    PendingTransaction recentTransaction = buyTransaction.get();
     recentTransaction.setTransactionId(
         cmd.getTransactionId() != null
             ? cmd.getTransactionId()
@@ -207,12 +245,12 @@ public class TransactionService {
     return recentTransaction;
   }
 
-  public PendingTransaction getPendingLimitBuyTransactions(Command cmd) {
+  public PendingTransaction claimPendingLimitBuyTransaction(Command cmd) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<PendingTransaction> buyTransactions =
-        pendingTransactionRepository.findByUserNameAndTypeOrderByCreatedDate(
-            userName, Enums.TransactionType.BUY_AT);
-    if (buyTransactions.size() < 1) {
+    PendingTransaction recentTransaction =
+        claimPending(
+            userName, Enums.TransactionType.BUY_AT, null, Enums.TransactionStatus.COMMITTED);
+    if (recentTransaction == null) {
       loggerService.createErrorEventLog(
           cmd.getUsername(),
           cmd.getTransactionId(),
@@ -223,31 +261,33 @@ public class TransactionService {
           "No open buy triggers.");
       throw new EntityMissingException();
     }
-    PendingTransaction recentTransaction = buyTransactions.get(0);
     recentTransaction.setTransactionId(cmd.getTransactionId());
     return recentTransaction;
   }
 
-  public Transaction getPendingLimitSellTransactionsByTicker(String stockTicker) {
+  public PendingTransaction claimPendingLimitSellTransactionByTicker(String stockTicker) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<PendingTransaction> sellTransactions =
-        pendingTransactionRepository.findByUserNameAndTypeAndStockCodeOrderByCreatedDate(
-            userName, Enums.TransactionType.SELL_AT, stockTicker);
-    if (sellTransactions.size() < 1) {
+    PendingTransaction transaction =
+        claimPending(
+            userName, Enums.TransactionType.SELL_AT, stockTicker, Enums.TransactionStatus.CANCELED);
+    if (transaction == null) {
       throw new EntityMissingException();
     }
-    return sellTransactions.get(0);
+    return transaction;
   }
 
-  public Transaction getCommittedLimitSellTransactionsByTicker(String stockTicker, Command cmd) {
+  public Transaction cancelCommittedLimitSellTransactionByTicker(String stockTicker, Command cmd) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<Transaction> sellTransactions =
-        transactionRepository.findByUserNameAndTypeAndStatusAndStockCodeOrderByCreatedDate(
-            userName,
-            Enums.TransactionType.SELL_AT,
-            Enums.TransactionStatus.COMMITTED,
-            stockTicker);
-    if (sellTransactions.size() < 1) {
+    Transaction recentTransaction =
+        claimCommitted(
+            Criteria.where("userName")
+                .is(userName)
+                .and("type")
+                .is(Enums.TransactionType.SELL_AT)
+                .and("stockCode")
+                .is(stockTicker),
+            Enums.TransactionStatus.CANCELED);
+    if (recentTransaction == null) {
       loggerService.createErrorEventLog(
           cmd.getUsername(),
           cmd.getTransactionId(),
@@ -258,28 +298,33 @@ public class TransactionService {
           "No open sell triggers for " + stockTicker);
       throw new EntityMissingException();
     }
-    Transaction recentTransaction = sellTransactions.get(0);
     recentTransaction.setTransactionId(cmd.getTransactionId());
     return recentTransaction;
   }
 
-  public Transaction getPendingLimitBuyTransactionsByTicker(String stockTicker) {
+  public PendingTransaction claimPendingLimitBuyTransactionByTicker(String stockTicker) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<PendingTransaction> sellTransactions =
-        pendingTransactionRepository.findByUserNameAndTypeAndStockCodeOrderByCreatedDate(
-            userName, Enums.TransactionType.BUY_AT, stockTicker);
-    if (sellTransactions.size() < 1) {
+    PendingTransaction transaction =
+        claimPending(
+            userName, Enums.TransactionType.BUY_AT, stockTicker, Enums.TransactionStatus.CANCELED);
+    if (transaction == null) {
       throw new EntityMissingException();
     }
-    return sellTransactions.get(0);
+    return transaction;
   }
 
-  public Transaction getCommittedLimitBuyTransactionsByTicker(String stockTicker, Command cmd) {
+  public Transaction cancelCommittedLimitBuyTransactionByTicker(String stockTicker, Command cmd) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<Transaction> sellTransactions =
-        transactionRepository.findByUserNameAndTypeAndStatusAndStockCodeOrderByCreatedDate(
-            userName, Enums.TransactionType.BUY_AT, Enums.TransactionStatus.COMMITTED, stockTicker);
-    if (sellTransactions.size() < 1) {
+    Transaction recentTransaction =
+        claimCommitted(
+            Criteria.where("userName")
+                .is(userName)
+                .and("type")
+                .is(Enums.TransactionType.BUY_AT)
+                .and("stockCode")
+                .is(stockTicker),
+            Enums.TransactionStatus.CANCELED);
+    if (recentTransaction == null) {
       loggerService.createErrorEventLog(
           cmd.getUsername(),
           cmd.getTransactionId(),
@@ -290,17 +335,16 @@ public class TransactionService {
           "No open buy triggers for " + stockTicker);
       throw new EntityMissingException();
     }
-    Transaction recentTransaction = sellTransactions.get(0);
     recentTransaction.setTransactionId(cmd.getTransactionId());
     return recentTransaction;
   }
 
-  public PendingTransaction getPendingLimitSellTransactions(Command cmd) {
+  public PendingTransaction claimPendingLimitSellTransaction(Command cmd) {
     String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-    List<PendingTransaction> sellTransactions =
-        pendingTransactionRepository.findByUserNameAndTypeOrderByCreatedDate(
-            userName, Enums.TransactionType.SELL_AT);
-    if (sellTransactions.size() < 1) {
+    PendingTransaction recentTransaction =
+        claimPending(
+            userName, Enums.TransactionType.SELL_AT, null, Enums.TransactionStatus.COMMITTED);
+    if (recentTransaction == null) {
       loggerService.createErrorEventLog(
           cmd.getUsername(),
           cmd.getTransactionId(),
@@ -311,13 +355,130 @@ public class TransactionService {
           "No open sell triggers.");
       throw new EntityMissingException();
     }
-    PendingTransaction recentTransaction = sellTransactions.get(0);
     recentTransaction.setTransactionId(cmd.getTransactionId());
     return recentTransaction;
   }
 
+  /**
+   * Atomically moves the oldest matching pending limit order to the status it is claimed for.
+   * Whoever gets the document back owns the transition, concurrent callers and the expiry job no
+   * longer match it. The document stays in the collection until settle has written the follow up,
+   * claimedAt lets releaseStaleClaims find it if the node dies before that.
+   */
+  private PendingTransaction claimPending(
+      String userName,
+      Enums.TransactionType type,
+      String stockCode,
+      Enums.TransactionStatus claimedFor) {
+    Criteria criteria =
+        Criteria.where("userName")
+            .is(userName)
+            .and("type")
+            .is(type)
+            .and("status")
+            .is(Enums.TransactionStatus.PENDING);
+    if (stockCode != null) {
+      criteria.and("stockCode").is(stockCode);
+    }
+    return mongoTemplate.findAndModify(
+        Query.query(criteria).with(Sort.by("createdDate")),
+        Update.update("status", claimedFor).set("claimedAt", Instant.now()),
+        PendingTransaction.class);
+  }
+
+  // Claims left by a node that died before settling go back to PENDING, to be triggered, canceled
+  // or expired again
+  private void releaseStaleClaims() {
+    mongoTemplate.updateMulti(
+        Query.query(
+            Criteria.where("status")
+                .ne(Enums.TransactionStatus.PENDING)
+                .and("claimedAt")
+                .lt(Instant.now().minusSeconds(claimTimeoutSeconds))),
+        Update.update("status", Enums.TransactionStatus.PENDING).unset("claimedAt"),
+        PendingTransaction.class);
+  }
+
+  /**
+   * Settles a claimed order in two steps, the account change and then the order record. If the
+   * account change fails the claim is undone, a pending order goes back to PENDING and a committed
+   * one back to COMMITTED, so it can be claimed again. A claimed pending order is removed only once
+   * its record is written.
+   */
+  private Transaction settle(Transaction order, Runnable account, Supplier<Transaction> record) {
+    Query claimed = Query.query(Criteria.where("id").is(order.getId()));
+    boolean pending = order instanceof PendingTransaction;
+    try {
+      account.run();
+    } catch (RuntimeException e) {
+      if (pending) {
+        mongoTemplate.updateFirst(
+            claimed,
+            Update.update("status", Enums.TransactionStatus.PENDING).unset("claimedAt"),
+            PendingTransaction.class);
+      } else {
+        mongoTemplate.updateFirst(
+            claimed,
+            Update.update("status", Enums.TransactionStatus.COMMITTED),
+            Transaction.class);
+      }
+      throw e;
+    }
+    Transaction written = record.get();
+    if (pending) {
+      mongoTemplate.remove(claimed, PendingTransaction.class);
+    }
+    return written;
+  }
+
+  /**
+   * Atomically moves the oldest matching committed limit order to a new status. Returns the order
+   * as it was before the update, or null if no committed order matched.
+   */
+  private Transaction claimCommitted(Criteria criteria, Enums.TransactionStatus status) {
+    return mongoTemplate.findAndModify(
+        Query.query(criteria.and("status").is(Enums.TransactionStatus.COMMITTED))
+            .with(Sort.by("createdDate")),
+        Update.update("status", status),
+        Transaction.class);
+  }
+
   public Account updateAccount(Transaction transaction) {
+    return updateAccount(transaction, 0);
+  }
+
+  // The refund of a buy filled below its limit goes in with the fill, in one account write
+  private Account updateAccount(Transaction transaction, double refund) {
     Account account = accountService.getByName(transaction.getUserName());
+    if (refund > 0) {
+      account.setBalance(account.getBalance() + refund);
+      if (this.debug)
+        loggerService.createAccountTransactionLog(
+            transaction.getUserName(), transaction.getTransactionId(), "add", refund);
+    }
+    applyToAccount(account, transaction);
+    if (this.debug) {
+      Enums.TransactionType type = transaction.getType();
+      if (type.equals(Enums.TransactionType.BUY)) {
+        loggerService.createAccountTransactionLog(
+            transaction.getUserName(),
+            transaction.getTransactionId(),
+            "remove",
+            transaction.getUnitPrice() * transaction.getStockAmount());
+      } else if (type.equals(Enums.TransactionType.SELL)
+          || type.equals(Enums.TransactionType.SELL_AT)) {
+        loggerService.createAccountTransactionLog(
+            transaction.getUserName(),
+            transaction.getTransactionId(),
+            "add",
+            transaction.getUnitPrice() * transaction.getStockAmount());
+      }
+    }
+    return accountService.save(account);
+  }
+
+  // Moves the money and stock of a filled order into the account, nothing is saved here
+  public static void applyToAccount(Account account, Transaction transaction) {
     Map<String, Long> stocks = account.getPortfolio();
     // Handel Buy and Buy At orders
     if (transaction.getType().equals(Enums.TransactionType.BUY)
@@ -327,13 +488,6 @@ public class TransactionService {
       if (!transaction.getType().equals(Enums.TransactionType.BUY_AT)) {
         account.setBalance(
             account.getBalance() - transaction.getUnitPrice() * transaction.getStockAmount());
-
-        if (this.debug)
-          loggerService.createAccountTransactionLog(
-              transaction.getUserName(),
-              transaction.getTransactionId(),
-              "remove",
-              transaction.getUnitPrice() * transaction.getStockAmount());
       }
       // Update portfolio with new stock counts
       long stockAmount;
@@ -362,19 +516,15 @@ public class TransactionService {
       double newMoney =
           account.getBalance() + transaction.getUnitPrice() * transaction.getStockAmount();
       account.setBalance(newMoney);
-      if (this.debug)
-        loggerService.createAccountTransactionLog(
-            transaction.getUserName(),
-            transaction.getTransactionId(),
-            "add",
-            transaction.getUnitPrice() * transaction.getStockAmount());
     }
-    return accountService.save(account);
   }
 
-  public Transaction cancelTransaction(Transaction transaction) {
+  public Transaction cancelTransaction(PendingTransaction transaction) {
+    if (!pendingOrderRepository.delete(transaction)) {
+      throw new EntityMissingException();
+    }
     transaction.setStatus(Enums.TransactionStatus.CANCELED);
-    pendingTransactionRepository.deleteById(transaction.getId());
+    summaryService.close(transaction);
     // Move cancelled transaction to non pending collection
     return transactionRepository.save(transaction);
   }
@@ -386,22 +536,32 @@ public class TransactionService {
       // Remove the stock from the portfolio while the order is active
       removeStockForHold(transaction.getStockAmount(), transaction);
     }
-    return pendingTransactionRepository.save(transaction);
+    PendingTransaction pending = pendingTransactionRepository.save(transaction);
+    summaryService.addPending(pending);
+    return pending;
   }
 
+  // The saved transaction must already be claimed from the pending collection
   public Transaction triggerLimitTransaction(
       PendingTransaction savedTransaction, Transaction newTransaction) {
     savedTransaction.setUnitPrice(newTransaction.getUnitPrice());
     savedTransaction.setCashAmount(
         savedTransaction.getUnitPrice() * savedTransaction.getStockAmount());
-    savedTransaction.setStatus(Enums.TransactionStatus.COMMITTED);
-    if (savedTransaction.getType().equals(Enums.TransactionType.BUY_AT)) {
-      // Remove the money from the account while the order is committed
-      removeMoneyForHold(savedTransaction.getCashAmount(), savedTransaction);
-    }
-    pendingTransactionRepository.delete(savedTransaction);
-    // Move commited transaction to new collection
-    return transactionRepository.save(savedTransaction);
+    return settle(
+        savedTransaction,
+        () -> {
+          if (savedTransaction.getType().equals(Enums.TransactionType.BUY_AT)) {
+            // Remove the money from the account while the order is committed, the order goes
+            // back to pending if it can not be afforded so it can still be triggered or canceled
+            removeMoneyForHold(savedTransaction.getCashAmount(), savedTransaction);
+          }
+        },
+        () -> {
+          savedTransaction.setStatus(Enums.TransactionStatus.COMMITTED);
+          summaryService.openTrigger(savedTransaction);
+          // Move commited transaction to new collection
+          return transactionRepository.save(savedTransaction);
+        });
   }
 
   private Account removeStockForHold(Long stockToSell, Transaction transaction) {
@@ -438,30 +598,55 @@ public class TransactionService {
     return accountService.save(account);
   }
 
+  // The transaction must already be claimed, either off PENDING or off COMMITTED
   public Transaction cancelSellLimitTransaction(Transaction transaction) {
-    accountService.refundStockFromTransaction(transaction);
-    transaction.setStatus(Enums.TransactionStatus.CANCELED);
-    pendingTransactionRepository.deleteById(transaction.getId());
-    // Move canceled transaction to new collection
-    return transactionRepository.save(transaction);
+    return settle(
+        transaction,
+        () -> accountService.refundStockFromTransaction(transaction),
+        () -> {
+          transaction.setStatus(Enums.TransactionStatus.CANCELED);
+          summaryService.close(transaction);
+          // Move canceled transaction to new collection
+          return transactionRepository.save(transaction);
+        });
   }
 
+  // Same as sell, the status is still the one the order was claimed from
   public Transaction cancelBuyLimitTransaction(Transaction transaction) {
-    Account account = accountService.getByName(transaction.getUserName());
-    if (transaction.getStatus().equals(Enums.TransactionStatus.COMMITTED)) {
-      account.setBalance(account.getBalance() + transaction.getCashAmount());
-      if (this.debug)
-        loggerService.createAccountTransactionLog(
-            transaction.getUserName(),
-            transaction.getTransactionId(),
-            "add",
-            transaction.getCashAmount());
+    return settle(
+        transaction,
+        () -> {
+          if (transaction.getStatus().equals(Enums.TransactionStatus.COMMITTED)) {
+            Account account = accountService.getByName(transaction.getUserName());
+            account.setBalance(account.getBalance() + transaction.getCashAmount());
+            if (this.debug)
+              loggerService.createAccountTransactionLog(
+                  transaction.getUserName(),
+                  transaction.getTransactionId(),
+                  "add",
+                  transaction.getCashAmount());
+
+            accountService.save(account);
+          }
+        },
+        () -> {
+          transaction.setStatus(Enums.TransactionStatus.CANCELED);
+          summaryService.close(transaction);
+          return transactionRepository.save(transaction);
+        });
+  }
 
-      accountService.save(account);
+  // Fill jobs share the quote bulkhead with requests. Null when it is full, the job then leaves the
+  // rest of its orders for the next run.
+  private Quote fillQuote(Transaction order) throws InterruptedException {
+    if (!bulkheads.quote().tryAcquire()) {
+      return null;
+    }
+    try {
+      return getQuote(order.getUserName(), order.getStockCode(), order.getTransactionId());
+    } finally {
+      bulkheads.quote().release();
     }
-    pendingTransactionRepository.deleteById(transaction.getId());
-    transaction.setStatus(Enums.TransactionStatus.CANCELED);
-    return transactionRepository.save(transaction);
   }
 
   public void fillSellLimitOrders() throws InterruptedException {
@@ -469,17 +654,25 @@ public class TransactionService {
         transactionRepository.findAllByStatusAndType(
             Enums.TransactionStatus.COMMITTED, Enums.TransactionType.SELL_AT);
     for (Transaction order : orders) {
-      Quote quote = getQuote(order.getUserName(), order.getStockCode(), order.getTransactionId());
-      if (quote.getUnitPrice() >= order.getUnitPrice()) {
-        order.setStatus(Enums.TransactionStatus.FILLED);
+      Quote quote = fillQuote(order);
+      if (quote == null) {
+        return;
+      }
+      if (quote.getUnitPrice() >= order.getUnitPrice() && claimFill(order)) {
         // Set the unit price to the quote price if its higher
         order.setUnitPrice(quote.getUnitPrice());
         order.setCashAmount(quote.getUnitPrice() * order.getStockAmount());
-        updateAccount(order);
-        loggerService.createTransactionSysEventLog(order, Enums.CommandType.COMMIT_SELL, null);
+        settle(
+            order,
+            () -> updateAccount(order),
+            () -> {
+              summaryService.close(order);
+              loggerService.createTransactionSysEventLog(
+                  order, Enums.CommandType.COMMIT_SELL, null);
+              return transactionRepository.save(order);
+            });
       }
     }
-    transactionRepository.saveAll(orders);
   }
 
   public void fillBuyLimitOrders() throws InterruptedException {
@@ -487,36 +680,39 @@ public class TransactionService {
         transactionRepository.findAllByStatusAndType(
             Enums.TransactionStatus.COMMITTED, Enums.TransactionType.BUY_AT);
     for (Transaction order : orders) {
-      Quote quote = getQuote(order.getUserName(), order.getStockCode(), order.getTransactionId());
-      if (quote.getUnitPrice() <= order.getUnitPrice()) {
-        order.setStatus(Enums.TransactionStatus.FILLED);
-
-        // This is adding a double save to the account
-        // Change me later
-        // Might also be removed depending on whether you buy at new quote or always trigger
+      Quote quote = fillQuote(order);
+      if (quote == null) {
+        return;
+      }
+      if (quote.getUnitPrice() <= order.getUnitPrice() && claimFill(order)) {
+        double refund = 0;
         if (quote.getUnitPrice() < order.getUnitPrice()) {
-          // Set the unit price to the quote price if its lower
+          // Set the unit price to the quote price if its lower and refund the difference
           order.setUnitPrice(quote.getUnitPrice());
-          refundForLowerBuyPrice(order);
+          refund = order.getCashAmount() - order.getUnitPrice() * order.getStockAmount();
           order.setCashAmount(quote.getUnitPrice() * order.getStockAmount());
         }
-        updateAccount(order);
-        loggerService.createTransactionSysEventLog(order, Enums.CommandType.COMMIT_BUY, null);
+        double lowerPriceRefund = refund;
+        settle(
+            order,
+            () -> updateAccount(order, lowerPriceRefund),
+            () -> {
+              summaryService.close(order);
+              loggerService.createTransactionSysEventLog(
+                  order, Enums.CommandType.COMMIT_BUY, null);
+              return transactionRepository.save(order);
+            });
       }
     }
-    transactionRepository.saveAll(orders);
   }
 
-  private Account refundForLowerBuyPrice(Transaction order) {
-    double newBuyPrice = order.getUnitPrice() * order.getStockAmount();
-    double refund = order.getCashAmount() - newBuyPrice;
-    Account account = accountService.getByName(order.getUserName());
-    account.setBalance(account.getBalance() + refund);
-
-    if (this.debug)
-      loggerService.createAccountTransactionLog(
-          order.getUserName(), order.getTransactionId(), "add", refund);
-
-    return accountService.save(account);
+  // COMMITTED -> FILLED, false if the order was canceled while the quote was fetched
+  private boolean claimFill(Transaction order) {
+    if (claimCommitted(Criteria.where("id").is(order.getId()), Enums.TransactionStatus.FILLED)
+        == null) {
+      return false;
+    }
+    order.setStatus(Enums.TransactionStatus.FILLED);
+    return true;
   }
 }
@@ -3,7 +3,13 @@ package com.daytrade.stocktrade.Services;
 import com.daytrade.stocktrade.Models.Exceptions.BadRequestException;
 import com.daytrade.stocktrade.Models.User;
 import com.daytrade.stocktrade.Repositories.UserRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -12,21 +18,39 @@ public class UserService {
   private final UserRepository userRepository;
   private final AccountService accountService;
   private final BCryptPasswordEncoder passwordEncoder;
+  // Cached so logins skip the lookup, every write evicts the user on all nodes
+  private final Cache<String, User> users;
+  // Carries the username to evict, or ALL when every user was deleted
+  private final RTopic evictions;
+  private static final String ALL = "*";
 
   @Autowired
   public UserService(
       UserRepository userRepository,
       AccountService accountService,
-      BCryptPasswordEncoder passwordEncoder) {
+      BCryptPasswordEncoder passwordEncoder,
+      RedissonClient redissonClient,
+      @Value("${login.user-cache-size:100000}") int userCacheSize,
+      @Value("${login.user-cache-seconds:600}") long userCacheSeconds) {
     this.userRepository = userRepository;
     this.accountService = accountService;
     this.passwordEncoder = passwordEncoder;
+    this.users =
+        CacheBuilder.newBuilder()
+            .maximumSize(userCacheSize)
+            .expireAfterWrite(userCacheSeconds, TimeUnit.SECONDS)
+            .build();
+    this.evictions = redissonClient.getTopic("user-cache-evictions");
+    this.evictions.addListener(String.class, (channel, username) -> evictLocal(username));
   }
 
   public User createUser(User user) {
     user.setPassword(passwordEncoder.encode(user.getPassword()));
+    // Users can not pick their own tier
+    user.setTier(null);
     try {
       User out = userRepository.save(user);
+      evict(user.getUsername());
       out.setPassword(null);
       accountService.createNewAccount(user.getUsername());
       return out;
@@ -34,8 +58,35 @@ public class UserService {
       throw new BadRequestException("A user with this username already exist");
     }
   }
+
+  public void deleteAll() {
+    userRepository.deleteAll();
+    evict(ALL);
+  }
+
+  // Drop the user here and on every other node
+  public void evict(String username) {
+    evictLocal(username);
+    evictions.publish(username);
+  }
+
+  private void evictLocal(String username) {
+    if (ALL.equals(username)) {
+      users.invalidateAll();
+    } else {
+      users.invalidate(username);
+    }
+  }
+
   // Required by spring for auth
   public User findByUsername(String username) {
-    return userRepository.findByUsername(username);
+    User user = users.getIfPresent(username);
+    if (user == null) {
+      user = userRepository.findByUsername(username);
+      if (user != null) {
+        users.put(username, user);
+      }
+    }
+    return user;
   }
 }
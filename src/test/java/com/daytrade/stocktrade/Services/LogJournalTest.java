@@ -0,0 +1,239 @@
+package com.daytrade.stocktrade.Services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Logger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+class LogJournalTest {
+
+  private static final int SEGMENT_SIZE = 64 * 1024;
+  private static final long FLUSH_TIMEOUT_MS = 10000;
+
+  @TempDir Path directory;
+
+  private final List<Logger> indexed = new CopyOnWriteArrayList<>();
+
+  @Test
+  void indexesAppendedLogsInOrder() throws Exception {
+    LogJournal journal = journal(SEGMENT_SIZE, indexed::addAll);
+    journal.start();
+    List<Logger> logs = logs(10);
+    logs.forEach(journal::append);
+    journal.flush(FLUSH_TIMEOUT_MS);
+    journal.shutdown();
+
+    assertEquals(transactionNumbers(logs), transactionNumbers(indexed));
+    assertEquals(0, journal.lag());
+  }
+
+  @Test
+  void readsAcrossSegmentsInOrder() throws Exception {
+    // Room for a handful of records per segment
+    LogJournal journal = journal(512, indexed::addAll);
+    journal.start();
+    List<Logger> logs = logs(50);
+    journal.appendAll(logs);
+    journal.flush(FLUSH_TIMEOUT_MS);
+    journal.shutdown();
+
+    assertEquals(transactionNumbers(logs), transactionNumbers(indexed));
+  }
+
+  @Test
+  void replaysRecordsLeftUnindexedByTheLastRun() throws Exception {
+    // Never started, as if the node died before the reader got to the records
+    LogJournal crashed = journal(SEGMENT_SIZE, indexed::addAll);
+    List<Logger> logs = logs(5);
+    crashed.appendAll(logs);
+    crashed.shutdown();
+    assertTrue(indexed.isEmpty());
+
+    LogJournal recovered = journal(SEGMENT_SIZE, indexed::addAll);
+    assertEquals(5, recovered.lag());
+    recovered.start();
+    recovered.flush(FLUSH_TIMEOUT_MS);
+    recovered.shutdown();
+
+    assertEquals(transactionNumbers(logs), transactionNumbers(indexed));
+  }
+
+  @Test
+  void replayStartsAtTheCheckpoint() throws Exception {
+    LogJournal first = journal(SEGMENT_SIZE, indexed::addAll);
+    first.start();
+    first.appendAll(logs(3));
+    first.flush(FLUSH_TIMEOUT_MS);
+    first.shutdown();
+    indexed.clear();
+
+    LogJournal second = journal(SEGMENT_SIZE, indexed::addAll);
+    assertEquals(0, second.lag());
+    second.start();
+    Logger next = log(99);
+    second.append(next);
+    second.flush(FLUSH_TIMEOUT_MS);
+    second.shutdown();
+
+    assertEquals(List.of("99"), transactionNumbers(indexed));
+  }
+
+  @Test
+  void stopsRecoveryAtTheFirstRecordFailingItsCrc() throws Exception {
+    LogJournal crashed = journal(SEGMENT_SIZE, indexed::addAll);
+    List<Logger> logs = logs(4);
+    crashed.appendAll(logs);
+    crashed.shutdown();
+    corruptPayload(segmentFiles().get(0), 2);
+
+    LogJournal recovered = journal(SEGMENT_SIZE, indexed::addAll);
+    recovered.start();
+    recovered.flush(FLUSH_TIMEOUT_MS);
+    recovered.shutdown();
+
+    assertEquals(transactionNumbers(logs.subList(0, 2)), transactionNumbers(indexed));
+  }
+
+  @Test
+  void stopsRecoveryAtATornRecord() throws Exception {
+    LogJournal crashed = journal(SEGMENT_SIZE, indexed::addAll);
+    List<Logger> logs = logs(3);
+    crashed.appendAll(logs);
+    crashed.shutdown();
+    // A length that runs past the end of the segment, as left by a write cut short
+    Path segment = segmentFiles().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, SEGMENT_SIZE), recordOffset(segment, 1));
+    }
+
+    LogJournal recovered = journal(SEGMENT_SIZE, indexed::addAll);
+    recovered.start();
+    recovered.flush(FLUSH_TIMEOUT_MS);
+    recovered.shutdown();
+
+    assertEquals(transactionNumbers(logs.subList(0, 1)), transactionNumbers(indexed));
+  }
+
+  @Test
+  void quarantinesRecordsTheIndexerKeepsRejecting() throws Exception {
+    List<Logger> logs = logs(5);
+    String poison = logs.get(2).getTransactionNumber();
+    LogJournal journal =
+        journal(
+            SEGMENT_SIZE,
+            batch -> {
+              if (batch.stream().anyMatch(log -> poison.equals(log.getTransactionNumber()))) {
+                throw new IllegalStateException("Rejected");
+              }
+              indexed.addAll(batch);
+            });
+    journal.start();
+    journal.appendAll(logs);
+    journal.flush(FLUSH_TIMEOUT_MS);
+    journal.shutdown();
+
+    List<Logger> expected = new ArrayList<>(logs);
+    expected.remove(2);
+    assertEquals(transactionNumbers(expected), transactionNumbers(indexed));
+    assertEquals(1, journal.quarantined());
+    assertEquals(0, journal.lag());
+    assertTrue(Files.size(directory.resolve("quarantine.records")) > 0);
+  }
+
+  @Test
+  void flushGivesUpAfterTheTimeoutWhileMongoIsUnreachable() throws Exception {
+    LogJournal journal =
+        journal(
+            SEGMENT_SIZE,
+            batch -> {
+              throw new DataAccessResourceFailureException("Unreachable");
+            });
+    journal.start();
+    journal.append(log(1));
+    long start = System.currentTimeMillis();
+    journal.flush(200);
+    long waited = System.currentTimeMillis() - start;
+    journal.shutdown();
+
+    assertTrue(waited < FLUSH_TIMEOUT_MS, "flush waited " + waited + "ms");
+    // Unreachable is never a reason to quarantine
+    assertEquals(0, journal.quarantined());
+    assertEquals(1, journal.lag());
+  }
+
+  private LogJournal journal(int segmentSize, Consumer<List<Logger>> indexer) throws IOException {
+    return new LogJournal(directory, segmentSize, 100, 1, indexer);
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> file.getFileName().toString().endsWith(".journal"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  // Offset of the record with the given index in a segment, after the 16 byte header
+  private static long recordOffset(Path segment, int record) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      long position = 16;
+      ByteBuffer length = ByteBuffer.allocate(4);
+      for (int i = 0; i < record; i++) {
+        length.clear();
+        channel.read(length, position);
+        position += 8 + length.getInt(0);
+      }
+      return position;
+    }
+  }
+
+  private static void corruptPayload(Path segment, int record) throws IOException {
+    long offset = recordOffset(segment, record) + 8;
+    try (FileChannel channel =
+        FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer first = ByteBuffer.allocate(1);
+      channel.read(first, offset);
+      first.put(0, (byte) ~first.get(0));
+      first.rewind();
+      channel.write(first, offset);
+    }
+  }
+
+  private static List<Logger> logs(int count) {
+    List<Logger> logs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      logs.add(log(i));
+    }
+    return logs;
+  }
+
+  private static Logger log(int number) {
+    Logger log = new Logger(Enums.LogType.UserCommandType, String.valueOf(number), "server1");
+    log.setCommandType(Enums.CommandType.BUY);
+    log.setUserName("user" + number);
+    log.setStockSymbol("ABC");
+    log.setFunds(100.5);
+    return log;
+  }
+
+  private static List<String> transactionNumbers(List<Logger> logs) {
+    return logs.stream().map(Logger::getTransactionNumber).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,128 @@
+package com.daytrade.stocktrade.Services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Exceptions.BadRequestException;
+import com.daytrade.stocktrade.Models.LogPage;
+import com.daytrade.stocktrade.Models.LogQuery;
+import com.daytrade.stocktrade.Models.Logger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+class LoggerServiceTest {
+
+  private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+  private final LoggerService loggerService =
+      new LoggerService(
+          mongoTemplate,
+          mock(AuditLogWriter.class),
+          mock(DumpLogExporter.class),
+          mock(RequestMetrics.class),
+          mock(Bulkheads.class),
+          "server1");
+
+  @Test
+  void tokenRoundTripsToTheEntriesAfterIt() {
+    Logger log = log(1000);
+
+    Document after = LoggerService.afterToken(LoggerService.token(log)).getCriteriaObject();
+
+    Instant timestamp = log.getTimestamp();
+    ObjectId id = new ObjectId(log.getId());
+    Document expected =
+        new Document(
+            "$or",
+            List.of(
+                new Document("timestamp", new Document("$gt", timestamp)),
+                new Document("timestamp", timestamp).append("_id", new Document("$gt", id))));
+    assertEquals(expected, after);
+  }
+
+  @Test
+  void tokenIsUrlSafe() {
+    String token = LoggerService.token(log(1000));
+
+    // Passed back as a query parameter as it is
+    assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+  }
+
+  @Test
+  void rejectsMalformedTokens() {
+    for (String token :
+        List.of("not a token!", encode("1000"), encode("soon:" + new ObjectId()), encode("1:x"))) {
+      assertThrows(BadRequestException.class, () -> LoggerService.afterToken(token), token);
+    }
+  }
+
+  @Test
+  void pagesAreOrderedByTimestampThenIdAndContinueAfterTheLastEntry() {
+    List<Logger> found = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      found.add(log(1000 + i));
+    }
+    when(mongoTemplate.find(any(Query.class), eq(Logger.class))).thenReturn(found);
+    LogQuery request = new LogQuery();
+    request.setSize(3);
+
+    LogPage page = loggerService.getLogs("user1", request, 100);
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(query.capture(), eq(Logger.class));
+    assertEquals(new Document("timestamp", 1).append("id", 1), query.getValue().getSortObject());
+    // One extra entry tells whether there is a next page
+    assertEquals(4, query.getValue().getLimit());
+    assertEquals(found.subList(0, 3), page.getContent());
+    assertEquals(LoggerService.token(found.get(2)), page.getNext());
+  }
+
+  @Test
+  void lastPageHasNoToken() {
+    List<Logger> found = List.of(log(1000), log(1001));
+    when(mongoTemplate.find(any(Query.class), eq(Logger.class))).thenReturn(found);
+    LogQuery request = new LogQuery();
+    request.setSize(3);
+    request.setAfter(LoggerService.token(log(999)));
+
+    LogPage page = loggerService.getLogs(null, request, 100);
+
+    assertEquals(found, page.getContent());
+    assertNull(page.getNext());
+  }
+
+  @Test
+  void rejectsPageSizesOutOfRange() {
+    LogQuery request = new LogQuery();
+    request.setSize(0);
+
+    assertThrows(BadRequestException.class, () -> loggerService.getLogs(null, request, 100));
+  }
+
+  private static Logger log(long timestamp) {
+    Logger log = new Logger(Enums.LogType.UserCommandType, "1", "server1");
+    log.setId(new ObjectId().toHexString());
+    log.setTimestamp(Instant.ofEpochMilli(timestamp));
+    return log;
+  }
+
+  private static String encode(String key) {
+    return Base64.getUrlEncoder().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+}
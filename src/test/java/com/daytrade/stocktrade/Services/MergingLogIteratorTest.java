@@ -0,0 +1,115 @@
+package com.daytrade.stocktrade.Services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.daytrade.stocktrade.Models.Logger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.util.CloseableIterator;
+
+class MergingLogIteratorTest {
+
+  private final AtomicInteger closed = new AtomicInteger();
+
+  @Test
+  void mergesCursorsInTimestampOrder() {
+    List<CloseableIterator<Logger>> cursors = new ArrayList<>();
+    cursors.add(cursor(log("a", 1), log("a", 4), log("a", 7)));
+    cursors.add(cursor(log("b", 2), log("b", 3), log("b", 9)));
+    cursors.add(cursor(log("c", 5), log("c", 6), log("c", 8)));
+
+    assertEquals(List.of("a1", "b2", "b3", "a4", "c5", "c6", "a7", "c8", "b9"), drain(cursors));
+  }
+
+  @Test
+  void sameTimestampsComeOutInCursorOrder() {
+    List<CloseableIterator<Logger>> cursors = new ArrayList<>();
+    cursors.add(cursor(log("a", 1), log("a", 2)));
+    cursors.add(cursor(log("b", 1), log("b", 2)));
+    cursors.add(cursor(log("c", 1)));
+
+    assertEquals(List.of("a1", "b1", "c1", "a2", "b2"), drain(cursors));
+  }
+
+  @Test
+  void skipsEmptyCursors() {
+    List<CloseableIterator<Logger>> cursors = new ArrayList<>();
+    cursors.add(cursor());
+    cursors.add(cursor(log("b", 1)));
+    cursors.add(cursor());
+
+    assertEquals(List.of("b1"), drain(cursors));
+  }
+
+  @Test
+  void takesCursorsAddedBeforeTheFirstRead() {
+    List<CloseableIterator<Logger>> cursors = new ArrayList<>();
+    MergingLogIterator logs = new MergingLogIterator(cursors);
+    cursors.add(cursor(log("a", 2)));
+    cursors.add(cursor(log("b", 1)));
+
+    assertEquals("b1", name(logs.next()));
+    assertEquals("a2", name(logs.next()));
+    assertFalse(logs.hasNext());
+    assertThrows(NoSuchElementException.class, logs::next);
+  }
+
+  @Test
+  void closesEveryCursor() {
+    List<CloseableIterator<Logger>> cursors = new ArrayList<>();
+    cursors.add(cursor(log("a", 1)));
+    cursors.add(cursor());
+
+    new MergingLogIterator(cursors).close();
+
+    assertEquals(2, closed.get());
+  }
+
+  private List<String> drain(List<CloseableIterator<Logger>> cursors) {
+    List<String> names = new ArrayList<>();
+    try (MergingLogIterator logs = new MergingLogIterator(cursors)) {
+      logs.forEachRemaining(log -> names.add(name(log)));
+    }
+    assertEquals(cursors.size(), closed.get());
+    return names;
+  }
+
+  private CloseableIterator<Logger> cursor(Logger... logs) {
+    Iterator<Logger> iterator = List.of(logs).iterator();
+    return new CloseableIterator<>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Logger next() {
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+        closed.incrementAndGet();
+      }
+    };
+  }
+
+  private static Logger log(String server, long timestamp) {
+    Logger log = new Logger(Enums.LogType.UserCommandType, "1", server);
+    log.setTimestamp(Instant.ofEpochMilli(timestamp));
+    return log;
+  }
+
+  // Server name and timestamp, enough to tell the entries apart
+  private static String name(Logger log) {
+    return log.getServerName() + log.getTimestamp().toEpochMilli();
+  }
+}
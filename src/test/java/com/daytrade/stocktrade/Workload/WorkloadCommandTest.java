@@ -0,0 +1,60 @@
+package com.daytrade.stocktrade.Workload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.daytrade.stocktrade.Models.Enums;
+import org.junit.jupiter.api.Test;
+
+class WorkloadCommandTest {
+
+  @Test
+  void parsesUserAndArguments() {
+    WorkloadCommand command = WorkloadCommand.parse("[12] BUY,oY01WVirLr,S, 1234.56");
+
+    assertEquals("12", command.getNumber());
+    assertEquals(Enums.CommandType.BUY, command.getType());
+    assertEquals("oY01WVirLr", command.getUser());
+    assertEquals("S", command.getStockSymbol());
+    assertEquals(1234.56, command.getAmount());
+  }
+
+  @Test
+  void toleratesSpacesAroundTheNumberAndCommand() {
+    WorkloadCommand command = WorkloadCommand.parse("  [1]  ADD ,user1,100.00");
+
+    assertEquals(Enums.CommandType.ADD, command.getType());
+    assertEquals("user1", command.getUser());
+    assertEquals(100.00, command.getAmount());
+  }
+
+  @Test
+  void dumplogWithoutUserDumpsEveryUser() {
+    WorkloadCommand command = WorkloadCommand.parse("[100] DUMPLOG,./testLOG");
+
+    assertNull(command.getUser());
+    assertEquals("./testLOG", command.getFilename());
+  }
+
+  @Test
+  void dumplogWithUser() {
+    WorkloadCommand command = WorkloadCommand.parse("[7] DUMPLOG,user1,./user1LOG");
+
+    assertEquals("user1", command.getUser());
+    assertEquals("./user1LOG", command.getFilename());
+  }
+
+  @Test
+  void blankLinesAreSkipped() {
+    assertNull(WorkloadCommand.parse("   "));
+  }
+
+  @Test
+  void rejectsMalformedLines() {
+    assertThrows(IllegalArgumentException.class, () -> WorkloadCommand.parse("BUY,user1,S,1"));
+    assertThrows(
+        IllegalArgumentException.class, () -> WorkloadCommand.parse("[1] DISPLAY_SUMMARY"));
+    assertThrows(IllegalArgumentException.class, () -> WorkloadCommand.parse("[1] NOPE,user1"));
+  }
+}
@@ -0,0 +1,68 @@
+package com.daytrade.stocktrade.Workload;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+// Latency histograms and error counts per command type
+public class CommandStats {
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public void record(String command, long nanos, boolean error) {
+    Entry entry = entries.computeIfAbsent(command, c -> new Entry());
+    entry.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    if (error) {
+      entry.errors.increment();
+    }
+  }
+
+  public long count() {
+    return entries.values().stream().mapToLong(e -> e.latency.getTotalCount()).sum();
+  }
+
+  public void print(PrintStream out, long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    out.printf(
+        Locale.ROOT,
+        "%d commands in %.1fs, %.1f per second%n",
+        count(),
+        seconds,
+        count() / seconds);
+    out.printf(
+        Locale.ROOT,
+        "%-18s %9s %7s %10s %10s %10s %10s%n",
+        "command",
+        "count",
+        "errors",
+        "p50 ms",
+        "p99 ms",
+        "p99.9 ms",
+        "max ms");
+    for (Map.Entry<String, Entry> e : new TreeMap<>(entries).entrySet()) {
+      Histogram latency = e.getValue().latency;
+      out.printf(
+          Locale.ROOT,
+          "%-18s %9d %7d %10.2f %10.2f %10.2f %10.2f%n",
+          e.getKey(),
+          latency.getTotalCount(),
+          e.getValue().errors.sum(),
+          latency.getValueAtPercentile(50) / 1000.0,
+          latency.getValueAtPercentile(99) / 1000.0,
+          latency.getValueAtPercentile(99.9) / 1000.0,
+          latency.getMaxValue() / 1000.0);
+    }
+  }
+
+  private static class Entry {
+    // Microseconds, resizes itself for slow outliers
+    private final Histogram latency = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+  }
+}
@@ -0,0 +1,81 @@
+package com.daytrade.stocktrade.Workload;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local replacement for the course quote server. Answers "SYM,user" with
+ * "price,SYM,user,timestamp,cryptokey" at a fixed price, so replays do not depend on the real
+ * server and limit orders can be sized from a known price.
+ */
+public class QuoteServerStandIn implements AutoCloseable {
+
+  private static final String CRYPTO_KEY = "c3RhbmQtaW4tcXVvdGUtc2VydmVyLWNyeXB0by1rZXk=";
+
+  private final ServerSocket server;
+  private final double price;
+  private final ExecutorService connections =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread thread = new Thread(r, "quote-stand-in");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public QuoteServerStandIn(int port, double price) throws IOException {
+    this.server = new ServerSocket(port);
+    this.price = price;
+    connections.execute(this::accept);
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    connections.shutdownNow();
+  }
+
+  private void accept() {
+    while (!server.isClosed()) {
+      try {
+        Socket socket = server.accept();
+        connections.execute(() -> answer(socket));
+      } catch (IOException e) {
+        // Closed
+      }
+    }
+  }
+
+  private void answer(Socket socket) {
+    try (socket;
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+      String line = in.readLine();
+      if (line == null) {
+        return;
+      }
+      String[] request = line.split(",");
+      String user = request.length > 1 ? request[1] : "";
+      out.println(
+          String.format(
+              Locale.ROOT,
+              "%.2f,%s,%s,%d,%s",
+              price,
+              request[0],
+              user,
+              System.currentTimeMillis(),
+              CRYPTO_KEY));
+    } catch (IOException e) {
+      // The client went away
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.daytrade.stocktrade.Workload;
+
+import com.daytrade.stocktrade.Models.Enums;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One line of a user command workload file, "[1] ADD,user,100.00". DUMPLOG is the only command
+ * that can come without a user, "[100] DUMPLOG,./testLOG" dumps the logs of every user.
+ */
+public class WorkloadCommand {
+
+  private static final Pattern LINE = Pattern.compile("\\s*\\[(\\d+)]\\s*([A-Z_]+)\\s*(,.*)?");
+
+  private final String number;
+  private final Enums.CommandType type;
+  private final String user;
+  private final String[] args;
+
+  private WorkloadCommand(String number, Enums.CommandType type, String user, String[] args) {
+    this.number = number;
+    this.type = type;
+    this.user = user;
+    this.args = args;
+  }
+
+  // Null for blank lines
+  public static WorkloadCommand parse(String line) {
+    if (line.isBlank()) {
+      return null;
+    }
+    Matcher matcher = LINE.matcher(line);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException("Not a workload command: " + line);
+    }
+    Enums.CommandType type = Enums.CommandType.valueOf(matcher.group(2));
+    String[] fields =
+        matcher.group(3) == null
+            ? new String[0]
+            : Arrays.stream(matcher.group(3).substring(1).split(","))
+                .map(String::trim)
+                .toArray(String[]::new);
+    if (type == Enums.CommandType.DUMPLOG && fields.length == 1) {
+      return new WorkloadCommand(matcher.group(1), type, null, fields);
+    }
+    if (fields.length == 0) {
+      throw new IllegalArgumentException("Missing user: " + line);
+    }
+    return new WorkloadCommand(
+        matcher.group(1), type, fields[0], Arrays.copyOfRange(fields, 1, fields.length));
+  }
+
+  // Used as the transactionId of the request
+  public String getNumber() {
+    return number;
+  }
+
+  public Enums.CommandType getType() {
+    return type;
+  }
+
+  // Null for a DUMPLOG of every user
+  public String getUser() {
+    return user;
+  }
+
+  public String getStockSymbol() {
+    return args[0];
+  }
+
+  // Last argument, the dollar amount of ADD, BUY, SELL, SET_*_AMOUNT and SET_*_TRIGGER
+  public double getAmount() {
+    return Double.parseDouble(args[args.length - 1]);
+  }
+
+  public String getFilename() {
+    return args[0];
+  }
+}
@@ -0,0 +1,260 @@
+package com.daytrade.stocktrade.Workload;
+
+import com.daytrade.stocktrade.Models.Enums;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a user command workload file against a running server and reports throughput, latency
+ * percentiles and errors per command type. Every user is signed up and logged in through
+ * /users/login first. Users then run concurrently, each user's commands in file order, and
+ * DUMPLOGs of every user run once all users are done.
+ *
+ * <p>Usage: {@code WorkloadReplay <workload file> [--url http://localhost:8080/stock-trade]
+ * [--threads 64] [--quote-port 4442] [--quote-price 10.00]}
+ *
+ * <p>With --quote-port a quote server stand-in is started on that port, start the server with
+ * QUOTE_SERVER_HOST=localhost and the same QUOTE_SERVER_PORT.
+ */
+public class WorkloadReplay {
+
+  private static final String PASSWORD = "workload-password";
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+  private final String url;
+  private final double quotePrice;
+  private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final CommandStats stats = new CommandStats();
+  private final Map<String, String> tokens = new HashMap<>();
+
+  public WorkloadReplay(String url, double quotePrice) {
+    this.url = url;
+    this.quotePrice = quotePrice;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println(
+          "Usage: WorkloadReplay <workload file> [--url url] [--threads n]"
+              + " [--quote-port port] [--quote-price price]");
+      System.exit(1);
+    }
+    Map<String, String> options = new HashMap<>();
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      options.put(args[i], args[i + 1]);
+    }
+    String url = options.getOrDefault("--url", "http://localhost:8080/stock-trade");
+    int threads = Integer.parseInt(options.getOrDefault("--threads", "64"));
+    double quotePrice = Double.parseDouble(options.getOrDefault("--quote-price", "10.00"));
+
+    Map<String, List<WorkloadCommand>> byUser = new LinkedHashMap<>();
+    List<WorkloadCommand> global = new ArrayList<>();
+    for (String line : Files.readAllLines(Paths.get(args[0]))) {
+      WorkloadCommand command = WorkloadCommand.parse(line);
+      if (command == null) {
+        continue;
+      }
+      if (command.getUser() == null) {
+        global.add(command);
+      } else {
+        byUser.computeIfAbsent(command.getUser(), u -> new ArrayList<>()).add(command);
+      }
+    }
+
+    QuoteServerStandIn standIn =
+        options.containsKey("--quote-port")
+            ? new QuoteServerStandIn(Integer.parseInt(options.get("--quote-port")), quotePrice)
+            : null;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      WorkloadReplay replay = new WorkloadReplay(url, quotePrice);
+      replay.run(byUser, global, pool);
+    } finally {
+      pool.shutdownNow();
+      if (standIn != null) {
+        standIn.close();
+      }
+    }
+  }
+
+  private void run(
+      Map<String, List<WorkloadCommand>> byUser,
+      List<WorkloadCommand> global,
+      ExecutorService pool)
+      throws Exception {
+    List<Future<?>> logins = new ArrayList<>();
+    for (String user : byUser.keySet()) {
+      logins.add(pool.submit(() -> login(user)));
+    }
+    for (Future<?> login : logins) {
+      login.get();
+    }
+
+    long start = System.nanoTime();
+    List<Future<?>> users = new ArrayList<>();
+    for (List<WorkloadCommand> commands : byUser.values()) {
+      users.add(
+          pool.submit(
+              () -> {
+                for (WorkloadCommand command : commands) {
+                  execute(command, tokens.get(command.getUser()));
+                }
+              }));
+    }
+    for (Future<?> user : users) {
+      user.get();
+    }
+    // Any logged in user can dump every user's logs
+    String token = tokens.values().stream().findFirst().orElse(null);
+    for (WorkloadCommand command : global) {
+      execute(command, token);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    stats.print(System.out, elapsed);
+  }
+
+  private void login(String user) {
+    Map<String, Object> body = new HashMap<>();
+    body.put("username", user);
+    body.put("password", PASSWORD);
+    body.put("email", user + "@workload.test");
+    // Fails for users left over from an earlier run, the login still works for them
+    send("SIGN_UP", post("/users/sign-up", body, null));
+    HttpResponse<?> response = send("LOGIN", post("/users/login", body, null));
+    String token =
+        response == null ? null : response.headers().firstValue("Authorization").orElse(null);
+    synchronized (tokens) {
+      tokens.put(user, token);
+    }
+  }
+
+  private void execute(WorkloadCommand command, String token) {
+    send(command.getType().name(), request(command, token));
+  }
+
+  // Null response when the request failed before a status came back
+  private HttpResponse<?> send(String name, HttpRequest request) {
+    long start = System.nanoTime();
+    try {
+      HttpResponse<?> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+      stats.record(name, System.nanoTime() - start, response.statusCode() >= 400);
+      return response;
+    } catch (IOException e) {
+      stats.record(name, System.nanoTime() - start, true);
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private HttpRequest request(WorkloadCommand command, String token) {
+    String id = command.getNumber();
+    Map<String, Object> body = new HashMap<>();
+    body.put("transactionId", id);
+    switch (command.getType()) {
+      case ADD:
+        body.put("balance", command.getAmount());
+        return post("/accounts/add", body, token);
+      case QUOTE:
+        return get("/quote/" + encode(command.getStockSymbol()) + "?transactionId=" + id, token);
+      case BUY:
+      case SELL:
+        body.put("type", command.getType().name());
+        body.put("stockCode", command.getStockSymbol());
+        body.put("cashAmount", command.getAmount());
+        return post("/order/simple", body, token);
+      case COMMIT_BUY:
+        return post("/buy/commit", body, token);
+      case CANCEL_BUY:
+        return post("/buy/cancel", body, token);
+      case COMMIT_SELL:
+        return post("/sell/commit", body, token);
+      case CANCEL_SELL:
+        return post("/sell/cancel", body, token);
+      case SET_BUY_AMOUNT:
+      case SET_SELL_AMOUNT:
+        // Limit orders are placed in shares, the dollar amount is sized at the stand-in's price
+        body.put(
+            "type",
+            command.getType() == Enums.CommandType.SET_BUY_AMOUNT
+                ? Enums.TransactionType.BUY_AT.name()
+                : Enums.TransactionType.SELL_AT.name());
+        body.put("stockCode", command.getStockSymbol());
+        body.put("cashAmount", command.getAmount());
+        body.put("stockAmount", Math.max(1, (long) (command.getAmount() / quotePrice)));
+        return post("/order/limit", body, token);
+      case SET_BUY_TRIGGER:
+        body.put("type", Enums.TransactionType.BUY_AT.name());
+        body.put("stockCode", command.getStockSymbol());
+        body.put("unitPrice", command.getAmount());
+        return post("/setBuy/trigger", body, token);
+      case SET_SELL_TRIGGER:
+        body.put("type", Enums.TransactionType.SELL_AT.name());
+        body.put("stockCode", command.getStockSymbol());
+        body.put("unitPrice", command.getAmount());
+        return post("/setSell/trigger", body, token);
+      case CANCEL_SET_BUY:
+        return post("/setBuy/cancel/" + encode(command.getStockSymbol()), body, token);
+      case CANCEL_SET_SELL:
+        return post("/setSell/cancel/" + encode(command.getStockSymbol()), body, token);
+      case DISPLAY_SUMMARY:
+        return get("/accounts/displaySummary?transactionId=" + id, token);
+      case DUMPLOG:
+        body.put("filename", command.getFilename());
+        if (command.getUser() == null) {
+          body.put("username", "");
+          return post("/logs/dumplog", body, token);
+        }
+        return post("/logs/user/dumplog", body, token);
+      default:
+        throw new IllegalArgumentException("Unknown command " + command.getType());
+    }
+  }
+
+  private HttpRequest get(String path, String token) {
+    return builder(path, token).GET().build();
+  }
+
+  private HttpRequest post(String path, Map<String, Object> body, String token) {
+    try {
+      return builder(path, token)
+          .header("Content-Type", "application/json")
+          .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+          .build();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private HttpRequest.Builder builder(String path, String token) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url + path)).timeout(TIMEOUT);
+    if (token != null) {
+      builder.header("Authorization", token);
+    }
+    return builder;
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+}